@@ -0,0 +1,145 @@
+package com.example.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Latency of approximate search with the HNSW index compared to exact search over all vectors.
+// The recall of the approximate search is printed after the setup, e.g. to tune efSearch for a corpus size.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HnswSearchBenchmark {
+
+    private static final int QUERY_COUNT = 1000;
+    private static final int MAX_RESULTS = 10;
+    private static final int CLUSTER_COUNT = 100;
+
+    @Param({"10000", "50000"})
+    int size;
+
+    @Param({"384"})
+    int dimension;
+
+    @Param({"true", "false"})
+    boolean quantized;
+
+    @Param({"32", "64", "128"})
+    int efSearch;
+
+    private Path directory;
+    private QuantizedEmbeddingStore exactStore;
+    private QuantizedEmbeddingStore hnswStore;
+    private List<EmbeddingSearchRequest> queries;
+    private int nextQuery;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("hnsw-benchmark");
+        exactStore = new QuantizedEmbeddingStore(directory.resolve("exact.bin"), quantized, Duration.ofDays(1));
+        hnswStore = new QuantizedEmbeddingStore(directory.resolve("hnsw.bin"), quantized, Duration.ofDays(1),
+                new HnswParameters(16, 200, efSearch));
+
+        // Clustered vectors resemble embeddings of text segments more than uniformly distributed ones
+        var random = new Random(42);
+        var centroids = new float[CLUSTER_COUNT][];
+        for (int i = 0; i < CLUSTER_COUNT; i++) {
+            centroids[i] = randomVector(random, null);
+        }
+        for (int first = 0; first < size; first += 1000) {
+            var ids = new ArrayList<String>();
+            var embeddings = new ArrayList<Embedding>();
+            var segments = new ArrayList<TextSegment>();
+            for (int i = first; i < Math.min(first + 1000, size); i++) {
+                ids.add("segment-" + i);
+                embeddings.add(Embedding.from(randomVector(random, centroids[random.nextInt(CLUSTER_COUNT)])));
+                segments.add(TextSegment.from("Segment " + i));
+            }
+            exactStore.addAll(ids, embeddings, segments);
+            hnswStore.addAll(ids, embeddings, segments);
+        }
+
+        queries = new ArrayList<>();
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            var queryEmbedding = Embedding.from(randomVector(random, centroids[random.nextInt(CLUSTER_COUNT)]));
+            queries.add(EmbeddingSearchRequest.builder().queryEmbedding(queryEmbedding).maxResults(MAX_RESULTS).minScore(0.0).build());
+        }
+        System.out.printf("%nRecall@%d with size=%d, quantized=%s, efSearch=%d: %.4f%n", MAX_RESULTS, size, quantized, efSearch, recall());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        // Removing all entries keeps the snapshots written on close small
+        exactStore.removeAll();
+        hnswStore.removeAll();
+        exactStore.close();
+        hnswStore.close();
+        try (var files = Files.walk(directory)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public EmbeddingSearchResult<TextSegment> exactSearch() {
+        return exactStore.search(nextQuery());
+    }
+
+    @Benchmark
+    public EmbeddingSearchResult<TextSegment> hnswSearch() {
+        return hnswStore.search(nextQuery());
+    }
+
+    private EmbeddingSearchRequest nextQuery() {
+        nextQuery = (nextQuery + 1) % QUERY_COUNT;
+        return queries.get(nextQuery);
+    }
+
+    private double recall() {
+        var found = 0;
+        var expected = 0;
+        for (var query : queries) {
+            var exactIds = exactStore.search(query).matches().stream().map(EmbeddingMatch::embeddingId).toList();
+            found += (int) hnswStore.search(query).matches().stream().filter(match -> exactIds.contains(match.embeddingId())).count();
+            expected += exactIds.size();
+        }
+        return (double) found / expected;
+    }
+
+    private float[] randomVector(Random random, float[] centroid) {
+        var vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (centroid == null ? 0 : centroid[i]) + (float) random.nextGaussian() * (centroid == null ? 1 : 0.7f);
+        }
+        return vector;
+    }
+}
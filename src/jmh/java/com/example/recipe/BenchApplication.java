@@ -0,0 +1,77 @@
+package com.example.recipe;
+
+import com.example.RecipeFinderApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// The application with the deterministic models of the bench profile and empty local stores in a temporary directory,
+// so that every benchmark trial starts from the same state
+final class BenchApplication implements AutoCloseable {
+
+    private final Path dataDirectory;
+    private final ConfigurableApplicationContext context;
+
+    private BenchApplication(Path dataDirectory, ConfigurableApplicationContext context) {
+        this.dataDirectory = dataDirectory;
+        this.context = context;
+    }
+
+    // Properties as command line arguments, as those override the active profile of application.yaml
+    static BenchApplication start(WebApplicationType webApplicationType, String... properties) throws IOException {
+        var dataDirectory = Files.createTempDirectory("recipe-finder-bench-");
+        var args = new ArrayList<String>();
+        args.add("--spring.profiles.active=bench");
+        args.add("--app.bench.data-directory=" + dataDirectory);
+        args.add("--logging.level.com.example=warn");
+        Stream.of(properties).map(property -> "--" + property).forEach(args::add);
+        var context = new SpringApplicationBuilder(RecipeFinderApplication.class)
+                .web(webApplicationType)
+                .logStartupInfo(false)
+                .run(args.toArray(String[]::new));
+        return new BenchApplication(dataDirectory, context);
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    ConfigurableApplicationContext context() {
+        return context;
+    }
+
+    // Ingests documents of generated recipes and waits for the ingestion to finish
+    void ingest(List<byte[]> documents) throws IOException {
+        var resources = new ArrayList<Resource>();
+        for (int i = 0; i < documents.size(); i++) {
+            var fileName = "bench-recipes-%d.pdf".formatted(i);
+            resources.add(new ByteArrayResource(documents.get(i)) {
+                @Override
+                public String getFilename() {
+                    return fileName;
+                }
+            });
+        }
+        bean(RecipeIngestionService.class).submit(resources).completion().join();
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        try (var paths = Files.walk(dataDirectory)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
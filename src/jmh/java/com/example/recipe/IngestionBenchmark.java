@@ -0,0 +1,64 @@
+package com.example.recipe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Time to ingest a recipe document through the whole pipeline, i.e. PDF parsing, splitting, embedding with the bench
+// embedding model, storing, and indexing of segments and recipes. Every invocation ingests a new document, as documents
+// ingested before are skipped. "embeddingLatency" simulates a remote embedding model, e.g. to tune the batch size and concurrency.
+// Run with -Pjmh.includes=IngestionBenchmark.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IngestionBenchmark {
+
+    @Param({"10", "100"})
+    int pages;
+
+    @Param({"0ms", "50ms"})
+    String embeddingLatency;
+
+    private BenchApplication application;
+    private long seed;
+    private byte[] document;
+
+    @Setup
+    public void setUp() throws IOException {
+        application = BenchApplication.start(WebApplicationType.NONE, "app.bench.embedding.latency=" + embeddingLatency);
+    }
+
+    // Generating the document takes a fraction of its ingestion, but isn't part of it
+    @Setup(Level.Invocation)
+    public void generateDocument() throws IOException {
+        document = RecipeDocuments.generate(pages, seed++);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        application.close();
+    }
+
+    @Benchmark
+    public void ingest() throws IOException {
+        application.ingest(List.of(document));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.recipe;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Generated recipe documents in the layout of the RecipeDocumentParser, one recipe per page.
+// The same seed generates the same recipes, different seeds generate documents that aren't skipped as already ingested.
+final class RecipeDocuments {
+
+    static final List<String> INGREDIENTS = List.of("bacon", "onions", "garlic", "tomatoes", "potatoes", "carrots", "leeks",
+            "mushrooms", "spinach", "eggs", "cream", "butter", "cheese", "rice", "pasta", "chicken", "beef", "salmon", "lentils",
+            "chickpeas", "peppers", "zucchini", "lemons", "parsley", "basil", "thyme", "ginger", "coconut milk", "beans", "flour");
+
+    private static final int INGREDIENTS_PER_RECIPE = 6;
+    private static final int INSTRUCTIONS_PER_RECIPE = 4;
+
+    private RecipeDocuments() {
+    }
+
+    static byte[] generate(int recipeCount, long seed) throws IOException {
+        var random = new Random(seed);
+        try (var document = new PDDocument(); var output = new ByteArrayOutputStream()) {
+            var font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int i = 0; i < recipeCount; i++) {
+                var page = new PDPage();
+                document.addPage(page);
+                try (var content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 11);
+                    content.setLeading(14);
+                    content.newLineAtOffset(50, 740);
+                    for (var line : recipe(random, seed, i)) {
+                        content.showText(line);
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(output);
+            return output.toByteArray();
+        }
+    }
+
+    private static List<String> recipe(Random random, long seed, int index) {
+        var ingredients = new ArrayList<String>();
+        while (ingredients.size() < INGREDIENTS_PER_RECIPE) {
+            var ingredient = INGREDIENTS.get(random.nextInt(INGREDIENTS.size()));
+            if (!ingredients.contains(ingredient)) {
+                ingredients.add(ingredient);
+            }
+        }
+
+        var lines = new ArrayList<String>();
+        lines.add("Recipe %d-%d with %s and %s".formatted(seed, index, ingredients.get(0), ingredients.get(1)));
+        lines.add("Serves 4");
+        lines.add("Ingredients");
+        ingredients.forEach(ingredient -> lines.add("- %d g %s".formatted(50 + random.nextInt(20) * 25, ingredient)));
+        lines.add("Instructions");
+        for (int step = 1; step <= INSTRUCTIONS_PER_RECIPE; step++) {
+            var ingredient = ingredients.get(random.nextInt(ingredients.size()));
+            lines.add("%d. Prepare the %s and cook for %d minutes.".formatted(step, ingredient, 5 + random.nextInt(25)));
+        }
+        return lines;
+    }
+}
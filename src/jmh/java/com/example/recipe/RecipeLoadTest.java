@@ -0,0 +1,219 @@
+package com.example.recipe;
+
+import org.springframework.boot.WebApplicationType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Closed-loop load test of the HTTP API, which reports the throughput and latency percentiles of recipe requests.
+// By default, the application is started with the deterministic models of the bench profile. Options:
+//   --users=16            concurrent users, each sending the next request when the previous one is complete
+//   --duration=30s        measured duration, after a warmup of --warmup=10s
+//   --mode=standard       standard, tools, rag or tools-and-rag
+//   --endpoint=stream     stream (SSE API with the streaming chat model) or ui (form post with the blocking RecipeService)
+//   --cached=false        repeat the same ingredients instead of a unique ingredient per request
+//   --url=...             base URL of a running instance instead of starting the application
+// Other options are passed to the application, e.g. --app.bench.chat.latency=500ms or --app.bulkhead.chat.max-concurrent-calls=16.
+// Run with ./gradlew loadTest -PloadTest.args="--users=64 --app.bench.chat.latency=500ms"
+public class RecipeLoadTest {
+
+    private static final int CORPUS_RECIPES = 200;
+
+    private final String url;
+    private final int users;
+    private final Duration duration;
+    private final Duration warmup;
+    private final String mode;
+    private final boolean stream;
+    private final boolean cached;
+    private final HttpClient httpClient = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong uniqueIngredients = new AtomicLong();
+    private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Long> firstEventLatencies = new ConcurrentLinkedQueue<>();
+
+    private RecipeLoadTest(String url, Map<String, String> options) {
+        this.url = url;
+        this.users = Integer.parseInt(options.get("users"));
+        this.duration = Duration.parse("PT" + options.get("duration"));
+        this.warmup = Duration.parse("PT" + options.get("warmup"));
+        this.mode = options.get("mode");
+        this.stream = options.get("endpoint").equals("stream");
+        this.cached = Boolean.parseBoolean(options.get("cached"));
+        if (!List.of("standard", "tools", "rag", "tools-and-rag").contains(mode)) {
+            throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = new HashMap<String, String>(Map.of("users", "16", "duration", "30s", "warmup", "10s", "mode", "standard",
+                "endpoint", "stream", "cached", "false"));
+        var applicationProperties = new ArrayList<String>();
+        for (var arg : args) {
+            var option = arg.replaceFirst("^--", "").split("=", 2);
+            if (options.containsKey(option[0]) || option[0].equals("url")) {
+                options.put(option[0], option.length > 1 ? option[1] : "true");
+            } else {
+                applicationProperties.add(arg.replaceFirst("^--", ""));
+            }
+        }
+
+        BenchApplication application = null;
+        var url = options.get("url");
+        if (url == null) {
+            applicationProperties.add("server.port=0");
+            application = BenchApplication.start(WebApplicationType.SERVLET, applicationProperties.toArray(String[]::new));
+            application.ingest(List.of(RecipeDocuments.generate(CORPUS_RECIPES, 1)));
+            url = "http://localhost:" + application.context().getEnvironment().getProperty("local.server.port");
+        }
+        try {
+            new RecipeLoadTest(url, options).run();
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+        }
+    }
+
+    private void run() {
+        System.out.printf("Load test of %s with %d users, mode %s, endpoint %s, warmup %s, duration %s%n", url, users, mode,
+                stream ? "stream" : "ui", warmup, duration);
+        var measurementStart = System.nanoTime() + warmup.toNanos();
+        var measurementEnd = measurementStart + duration.toNanos();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < users; i++) {
+                executor.execute(() -> {
+                    while (System.nanoTime() < measurementEnd && !Thread.currentThread().isInterrupted()) {
+                        request(measurementStart);
+                    }
+                });
+            }
+        }
+        report();
+    }
+
+    // Only requests started after the warmup are measured
+    private void request(long measurementStart) {
+        var startTime = System.nanoTime();
+        var measured = startTime >= measurementStart;
+        try {
+            var firstEventTime = stream ? streamRecipe() : postRecipeForm();
+            var endTime = System.nanoTime();
+            if (measured) {
+                requests.incrementAndGet();
+                latencies.add(endTime - startTime);
+                if (firstEventTime > 0) {
+                    firstEventLatencies.add(firstEventTime - startTime);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (measured) {
+                requests.incrementAndGet();
+                errors.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Returns the time of the first event, the request fails if the recipe isn't complete
+    private long streamRecipe() throws IOException, InterruptedException {
+        var query = new StringBuilder();
+        ingredients().forEach(ingredient -> query.append("ingredients=").append(encode(ingredient)).append('&'));
+        query.append("preferAvailableIngredients=").append(preferAvailableIngredients())
+                .append("&preferOwnRecipes=").append(preferOwnRecipes());
+        var request = HttpRequest.newBuilder(URI.create(url + "/api/v1/recipes/stream?" + query)).GET().build();
+        var response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (var reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            if (response.statusCode() != 200) {
+                throw new IOException("Status " + response.statusCode());
+            }
+            var firstEventTime = 0L;
+            var recipeReceived = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("event:")) {
+                    if (firstEventTime == 0) {
+                        firstEventTime = System.nanoTime();
+                    }
+                    recipeReceived |= line.substring(6).strip().equals("recipe");
+                }
+            }
+            if (!recipeReceived) {
+                throw new IOException("Recipe stream incomplete");
+            }
+            return firstEventTime;
+        }
+    }
+
+    private long postRecipeForm() throws IOException, InterruptedException {
+        var form = "ingredientsStr=%s&preferAvailableIngredients=%s&preferOwnRecipes=%s"
+                .formatted(encode(String.join(",", ingredients())), preferAvailableIngredients(), preferOwnRecipes());
+        var request = HttpRequest.newBuilder(URI.create(url + "/"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        var response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IOException("Status " + response.statusCode());
+        }
+        return 0;
+    }
+
+    private List<String> ingredients() {
+        return cached ? List.of("bacon", "onions") : List.of("bacon", "onions", "ingredient" + uniqueIngredients.incrementAndGet());
+    }
+
+    private boolean preferAvailableIngredients() {
+        return mode.startsWith("tools");
+    }
+
+    private boolean preferOwnRecipes() {
+        return mode.endsWith("rag");
+    }
+
+    private void report() {
+        var seconds = duration.toNanos() / 1e9;
+        System.out.printf("Requests: %d, errors: %d, throughput: %.1f requests/s%n", requests.get(), errors.get(),
+                (requests.get() - errors.get()) / seconds);
+        System.out.println("Latency:     " + percentiles(latencies));
+        if (!firstEventLatencies.isEmpty()) {
+            System.out.println("First event: " + percentiles(firstEventLatencies));
+        }
+    }
+
+    private static String percentiles(ConcurrentLinkedQueue<Long> latencies) {
+        var sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        if (sorted.length == 0) {
+            return "no successful requests";
+        }
+        return "p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms".formatted(percentile(sorted, 0.5), percentile(sorted, 0.9),
+                percentile(sorted, 0.99), sorted[sorted.length - 1] / 1e6);
+    }
+
+    // Nearest-rank percentile in milliseconds
+    private static double percentile(long[] sorted, double percentile) {
+        var index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.recipe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Overhead of RecipeService.fetchRecipeFor per mode with the deterministic models of the bench profile, i.e. prompt templating,
+// AiService proxies, tool executions, retrieval from an ingested corpus, bulkhead, routing, response parsing and metrics.
+// Each request has a unique ingredient, so that it misses the recipe cache and isn't answered by an uploaded recipe.
+// "cached" repeats the same request instead. Run with -Pjmh.includes=RecipeServiceBenchmark.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecipeServiceBenchmark {
+
+    private static final int CORPUS_RECIPES = 200;
+
+    @Param({"standard", "tools", "rag", "tools-and-rag"})
+    String mode;
+
+    @Param({"false", "true"})
+    boolean cached;
+
+    // Without prefetching, the model requests the execution of the tool in an additional round trip
+    @Param({"true", "false"})
+    boolean prefetchTools;
+
+    private BenchApplication application;
+    private RecipeService recipeService;
+    private boolean preferAvailableIngredients;
+    private boolean preferOwnRecipes;
+    private long requests;
+
+    @Setup
+    public void setUp() throws IOException {
+        application = BenchApplication.start(WebApplicationType.NONE, "app.tools.prefetch=" + prefetchTools);
+        application.ingest(List.of(RecipeDocuments.generate(CORPUS_RECIPES, 1)));
+        recipeService = application.bean(RecipeService.class);
+        preferAvailableIngredients = mode.startsWith("tools");
+        preferOwnRecipes = mode.endsWith("rag");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        application.close();
+    }
+
+    @Benchmark
+    public Recipe fetchRecipe() throws IOException {
+        var ingredients = cached ? List.of("bacon", "onions") : List.of("bacon", "onions", "ingredient" + requests++);
+        return recipeService.fetchRecipeFor(FridgeInventory.DEFAULT_USER, ingredients, preferAvailableIngredients, preferOwnRecipes, false);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.recipe;
+
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.query.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Latency of the hybrid retrieval of the RAG modes, i.e. query embedding, vector search and ingredient index search
+// with reciprocal rank fusion, for corpora of ingested recipes of different sizes.
+// Run with -Pjmh.includes=RetrievalBenchmark.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RetrievalBenchmark {
+
+    private static final int QUERY_COUNT = 1000;
+    private static final int RECIPES_PER_DOCUMENT = 500;
+
+    @Param({"1000", "10000"})
+    int recipes;
+
+    @Param({"true", "false"})
+    boolean hnsw;
+
+    private BenchApplication application;
+    private HybridContentRetriever contentRetriever;
+    private List<Query> queries;
+    private int nextQuery;
+
+    @Setup
+    public void setUp() throws IOException {
+        application = BenchApplication.start(WebApplicationType.NONE, "app.embedding-store.hnsw.enabled=" + hnsw);
+        var documents = new ArrayList<byte[]>();
+        for (int i = 0; i < recipes; i += RECIPES_PER_DOCUMENT) {
+            documents.add(RecipeDocuments.generate(Math.min(RECIPES_PER_DOCUMENT, recipes - i), i));
+        }
+        application.ingest(documents);
+        contentRetriever = application.bean(HybridContentRetriever.class);
+
+        var random = new Random(42);
+        queries = new ArrayList<>();
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            var ingredients = RecipeDocuments.INGREDIENTS;
+            queries.add(Query.from(ingredients.get(random.nextInt(ingredients.size())) + "," + ingredients.get(random.nextInt(ingredients.size()))));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        application.close();
+    }
+
+    @Benchmark
+    public List<Content> retrieve() {
+        var query = queries.get(nextQuery);
+        nextQuery = (nextQuery + 1) % queries.size();
+        return contentRetriever.retrieve(query);
+    }
+}
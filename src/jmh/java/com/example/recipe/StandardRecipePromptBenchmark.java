@@ -0,0 +1,83 @@
+package com.example.recipe;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.input.PromptTemplate;
+import dev.langchain4j.service.AiServices;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Per-request overhead of the AiService API without annotations, with a ChatModel that responds immediately.
+// "perRequest" reads the prompts and builds the proxy on every request as before, "registry" uses the PromptRegistry and a
+// proxy built once. Run with -Pjmh.includes=StandardRecipePromptBenchmark and e.g. profilers = ['gc'] for the allocation rate.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StandardRecipePromptBenchmark {
+
+    private static final String RECIPE_JSON = """
+            {"name": "Bacon and onion tart", "description": "A savory tart", "ingredients": ["200 g bacon", "2 onions"],
+            "instructions": ["Fry the bacon and onions", "Bake the tart"], "imageUrl": ""}
+            """;
+
+    private ChatModel chatModel;
+    private PromptRegistry promptRegistry;
+    private RecipeAiServices.Standard recipeAiService;
+
+    @Setup
+    public void setUp() throws IOException {
+        chatModel = new ChatModel() {
+            @Override
+            public ChatResponse doChat(ChatRequest chatRequest) {
+                return ChatResponse.builder().aiMessage(AiMessage.from(RECIPE_JSON)).build();
+            }
+        };
+        promptRegistry = new PromptRegistry(new PathMatchingResourcePatternResolver(), "");
+        recipeAiService = AiServices.builder(RecipeAiServices.Standard.class)
+                .chatModel(chatModel)
+                .systemMessageProvider(chatMemoryId -> promptRegistry.text("json-recipe-response"))
+                .build();
+    }
+
+    @Benchmark
+    public String perRequest() throws IOException {
+        var systemPrompt = new ClassPathResource("prompts/json-recipe-response").getContentAsString(StandardCharsets.UTF_8);
+        var userPromptTemplate = new ClassPathResource("prompts/recipe-for-ingredients").getContentAsString(StandardCharsets.UTF_8);
+        var perRequestAiService = AiServices.builder(RecipeAiServices.Standard.class)
+                .chatModel(chatModel)
+                .systemMessageProvider(chatMemoryId -> systemPrompt)
+                .build();
+        var userMessage = PromptTemplate.from(userPromptTemplate)
+                .apply(Map.of("ingredients", "bacon,onions"))
+                .toUserMessage();
+        return perRequestAiService.find(userMessage);
+    }
+
+    @Benchmark
+    public String registry() {
+        var userMessage = promptRegistry.template("recipe-for-ingredients")
+                .apply(Map.of("ingredients", "bacon,onions"))
+                .toUserMessage();
+        return recipeAiService.find(userMessage);
+    }
+}
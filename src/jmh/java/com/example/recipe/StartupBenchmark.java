@@ -0,0 +1,124 @@
+package com.example.recipe;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Cold-start time of the application JAR, measured from the start of the JVM until the health endpoint responds, as that's
+// when a new node can take load. Compares the plain JAR with the CDS archive, and with Spring AOT if the JAR was built with it.
+// Options: --directory (of the extracted JAR and the CDS archive), --jar, --aot, --runs. Other options are passed to the application.
+// Run with ./gradlew startupBenchmark [-Paot] [-PstartupProfiles=openai]
+public class StartupBenchmark {
+
+    private static final String CDS_ARCHIVE = "application.jsa";
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    private final Path directory;
+    private final String jar;
+    private final int runs;
+    private final List<String> applicationArgs;
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+    private StartupBenchmark(Path directory, String jar, int runs, List<String> applicationArgs) {
+        this.directory = directory;
+        this.jar = jar;
+        this.runs = runs;
+        this.applicationArgs = applicationArgs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = new HashMap<String, String>(Map.of("directory", "build/cds", "aot", "false", "runs", "5"));
+        var applicationArgs = new ArrayList<String>();
+        for (var arg : args) {
+            var option = arg.replaceFirst("^--", "").split("=", 2);
+            if (options.containsKey(option[0]) || option[0].equals("jar")) {
+                options.put(option[0], option.length > 1 ? option[1] : "true");
+            } else {
+                applicationArgs.add(arg);
+            }
+        }
+        if (options.get("jar") == null) {
+            throw new IllegalArgumentException("Missing --jar option");
+        }
+
+        var benchmark = new StartupBenchmark(Path.of(options.get("directory")), options.get("jar"), Integer.parseInt(options.get("runs")),
+                applicationArgs);
+        var variants = new ArrayList<Map.Entry<String, List<String>>>();
+        variants.add(Map.entry("jar", List.of()));
+        if (Files.exists(benchmark.directory.resolve(CDS_ARCHIVE))) {
+            variants.add(Map.entry("cds", List.of("-XX:SharedArchiveFile=" + CDS_ARCHIVE)));
+        }
+        if (Boolean.parseBoolean(options.get("aot"))) {
+            variants.add(Map.entry("aot", List.of("-Dspring.aot.enabled=true")));
+            variants.add(Map.entry("cds+aot", List.of("-XX:SharedArchiveFile=" + CDS_ARCHIVE, "-Dspring.aot.enabled=true")));
+        }
+        for (var variant : variants) {
+            benchmark.run(variant.getKey(), variant.getValue());
+        }
+    }
+
+    private void run(String variant, List<String> jvmArgs) throws IOException, InterruptedException {
+        var startupTimes = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            startupTimes[i] = startUntilHealthy(jvmArgs);
+        }
+        Arrays.sort(startupTimes);
+        System.out.printf("%-8s min %5d ms, median %5d ms, max %5d ms%n", variant, startupTimes[0], startupTimes[runs / 2], startupTimes[runs - 1]);
+    }
+
+    private long startUntilHealthy(List<String> jvmArgs) throws IOException, InterruptedException {
+        var port = freePort();
+        var command = new ArrayList<String>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(List.of("--add-modules", "jdk.incubator.vector"));
+        command.addAll(jvmArgs);
+        command.addAll(List.of("-jar", jar, "--server.port=" + port));
+        command.addAll(applicationArgs);
+
+        var startTime = System.nanoTime();
+        var process = new ProcessBuilder(command)
+                .directory(directory.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            var healthRequest = HttpRequest.newBuilder(URI.create("http://localhost:%d/actuator/health".formatted(port)))
+                    .timeout(Duration.ofSeconds(1))
+                    .build();
+            while (System.nanoTime() - startTime < STARTUP_TIMEOUT.toNanos()) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Application exited with status %d, run it with %s".formatted(process.exitValue(), command));
+                }
+                try {
+                    if (httpClient.send(healthRequest, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return Duration.ofNanos(System.nanoTime() - startTime).toMillis();
+                    }
+                } catch (IOException e) {
+                    // Not listening yet
+                }
+                Thread.sleep(10);
+            }
+            throw new IllegalStateException("Application not healthy within " + STARTUP_TIMEOUT);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
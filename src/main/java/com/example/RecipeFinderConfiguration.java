@@ -1,40 +1,76 @@
 package com.example;
 
+import com.example.embedding.HnswParameters;
+import com.example.embedding.QuantizedEmbeddingStore;
+import dev.langchain4j.data.document.DocumentSplitter;
 import dev.langchain4j.data.document.splitter.DocumentSplitters;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.chat.ChatModel;
-import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
-import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisPooled;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 
 @Configuration
 class RecipeFinderConfiguration {
 
-    // LangChain4j auto-configures ChatModel, but the AiServices expect it to be named "chatModel"
-    // This bean aliases the auto-configured ChatModel to the expected name
-    @Bean("chatModel")
-    ChatModel chatModel(ChatModel autoconfiguredChatModel) {
-        return autoconfiguredChatModel;
+    // The embedding stores and content retrievers, including the auto-configured ones like the Redis EmbeddingStore, which
+    // connects to Redis and creates its index when created, are only needed for RAG and ingestion. They are created when first
+    // used instead of at startup, as their consumers inject them lazily.
+    @Bean
+    static BeanFactoryPostProcessor lazyRagBeans() {
+        return beanFactory -> {
+            for (var type : List.of(EmbeddingStore.class, ContentRetriever.class)) {
+                for (var beanName : beanFactory.getBeanNamesForType(type, true, false)) {
+                    if (beanFactory.containsBeanDefinition(beanName)) {
+                        beanFactory.getBeanDefinition(beanName).setLazyInit(true);
+                    }
+                }
+            }
+        };
     }
 
+    // Splitting of documents in the ETL pipeline orchestrating the flow from raw data sources to a structured vector store
+    @Bean
+    DocumentSplitter documentSplitter() {
+        return DocumentSplitters.recursive(800, 200);
+    }
 
-    // Configuration of ETL pipeline orchestrating the flow from raw data sources to a structured vector store
+    // Local EmbeddingStore for single-node deployments without Redis, persisted to a memory-mapped snapshot file,
+    // with an HNSW index for retrieval in sub-linear time
+    @ConditionalOnProperty(prefix = "langchain4j.community.redis", name = "enabled", havingValue = "false")
     @Bean
-    EmbeddingStoreIngestor embeddingStoreIngestor (EmbeddingStore<TextSegment> embeddingStore, EmbeddingModel embeddingModel) {
-        return EmbeddingStoreIngestor.builder()
-                .embeddingModel(embeddingModel)
-                .embeddingStore(embeddingStore)
-                .documentSplitter(DocumentSplitters.recursive(800, 200))
-                .build();
+    EmbeddingStore<TextSegment> simpleEmbeddingStore(@Value("${app.embedding-store.file}") Path file,
+                                                     @Value("${app.embedding-store.quantized}") boolean quantized,
+                                                     @Value("${app.embedding-store.snapshot-interval}") Duration snapshotInterval,
+                                                     @Value("${app.embedding-store.hnsw.enabled}") boolean hnswEnabled,
+                                                     @Value("${app.embedding-store.hnsw.m}") int m,
+                                                     @Value("${app.embedding-store.hnsw.ef-construction}") int efConstruction,
+                                                     @Value("${app.embedding-store.hnsw.ef-search}") int efSearch) throws IOException {
+        var hnswParameters = hnswEnabled ? new HnswParameters(m, efConstruction, efSearch) : null;
+        return new QuantizedEmbeddingStore(file, quantized, snapshotInterval, hnswParameters);
     }
 
-    @ConditionalOnProperty(prefix = "langchain4j.redis", name = "enabled", havingValue = "false")
+    // Redis client for application data like the recipe cache, shared by all nodes connected to the same Redis instance
+    @ConditionalOnProperty(prefix = "app.redis", name = "enabled", havingValue = "true")
     @Bean
-    EmbeddingStore<TextSegment> simpleEmbeddingStore() {
-        return new InMemoryEmbeddingStore<>();
+    JedisPooled redisClient(@Value("${langchain4j.community.redis.host}") String host,
+                            @Value("${langchain4j.community.redis.port}") int port,
+                            @Value("${app.redis.timeout}") Duration timeout) {
+        var clientConfig = DefaultJedisClientConfig.builder()
+                .connectionTimeoutMillis((int) timeout.toMillis())
+                .socketTimeoutMillis((int) timeout.toMillis())
+                .build();
+        return new JedisPooled(new HostAndPort(host, port), clientConfig);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,223 @@
+package com.example.embedding;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Hierarchical navigable small world graph over the ordinals of a {@link QuantizedEmbeddingStore}, for approximate
+ * nearest neighbour search with a logarithmic instead of a linear number of similarity computations.
+ * See Malkov and Yashunin, "Efficient and robust approximate nearest neighbor search using Hierarchical Navigable Small World graphs".
+ * <p>
+ * Deleted ordinals stay in the graph to keep it connected, but are excluded from search results. Searches traverse them
+ * without counting them towards the candidate list, so that they don't displace live results.
+ * Not thread-safe, the store guards inserts with its write lock and searches with its read lock.
+ */
+final class HnswIndex {
+
+    private static final Comparator<Candidate> BY_SIMILARITY = Comparator.comparingDouble(Candidate::similarity);
+
+    private final QuantizedEmbeddingStore store;
+    private final HnswParameters parameters;
+    private final double levelMultiplier;
+    // Fixed seed, so that the graph of the same inserts is reproducible
+    private final Random random = new Random(42);
+    // Neighbours of each ordinal per layer, with the number of neighbours at index 0
+    private final List<int[][]> links = new ArrayList<>();
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswIndex(QuantizedEmbeddingStore store, HnswParameters parameters) {
+        this.store = store;
+        this.parameters = parameters;
+        this.levelMultiplier = 1 / Math.log(parameters.m());
+    }
+
+    int size() {
+        return links.size();
+    }
+
+    // Removes all ordinals, e.g. before the index is rebuilt for the compacted store
+    void clear() {
+        links.clear();
+        entryPoint = -1;
+        maxLevel = -1;
+    }
+
+    // Ordinals have to be inserted in ascending order without gaps
+    void insert(int ordinal) {
+        var vector = store.vectorAt(ordinal);
+        var scratch = store.newScratch();
+        var level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        var nodeLinks = new int[level + 1][];
+        for (int layer = 0; layer <= level; layer++) {
+            nodeLinks[layer] = new int[maxNeighbours(layer) + 1];
+        }
+        links.add(nodeLinks);
+        if (entryPoint < 0) {
+            entryPoint = ordinal;
+            maxLevel = level;
+            return;
+        }
+
+        var closest = new Candidate(entryPoint, store.similarity(vector, entryPoint, scratch));
+        for (int layer = maxLevel; layer > level; layer--) {
+            closest = searchGreedy(vector, closest, layer, scratch);
+        }
+        var entryPoints = List.of(closest);
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            var candidates = searchLayer(vector, entryPoints, parameters.efConstruction(), layer, scratch, false);
+            for (var neighbour : selectNeighbours(candidates, parameters.m(), scratch)) {
+                nodeLinks[layer][++nodeLinks[layer][0]] = neighbour.ordinal();
+                link(neighbour.ordinal(), ordinal, layer, scratch);
+            }
+            entryPoints = candidates;
+        }
+        if (level > maxLevel) {
+            entryPoint = ordinal;
+            maxLevel = level;
+        }
+    }
+
+    // Returns at least the k approximately most similar live ordinals (or all live ordinals reachable, if there are fewer),
+    // ordered by descending similarity
+    List<Candidate> search(float[] normalizedQuery, int k) {
+        if (entryPoint < 0) {
+            return List.of();
+        }
+        var scratch = store.newScratch();
+        var closest = new Candidate(entryPoint, store.similarity(normalizedQuery, entryPoint, scratch));
+        for (int layer = maxLevel; layer > 0; layer--) {
+            closest = searchGreedy(normalizedQuery, closest, layer, scratch);
+        }
+        return searchLayer(normalizedQuery, List.of(closest), Math.max(parameters.efSearch(), k), 0, scratch, true);
+    }
+
+    private Candidate searchGreedy(float[] query, Candidate start, int layer, QuantizedEmbeddingStore.Scratch scratch) {
+        var closest = start;
+        var changed = true;
+        while (changed) {
+            changed = false;
+            var closestLinks = links.get(closest.ordinal())[layer];
+            for (int i = 1; i <= closestLinks[0]; i++) {
+                var similarity = store.similarity(query, closestLinks[i], scratch);
+                if (similarity > closest.similarity()) {
+                    closest = new Candidate(closestLinks[i], similarity);
+                    changed = true;
+                }
+            }
+        }
+        return closest;
+    }
+
+    // Best-first search on a layer, returning the ef most similar ordinals found, ordered by descending similarity.
+    // With liveOnly, deleted ordinals are explored but not returned, so that the search continues until it found ef live ordinals.
+    private List<Candidate> searchLayer(float[] query, List<Candidate> entryPoints, int ef, int layer, QuantizedEmbeddingStore.Scratch scratch,
+                                        boolean liveOnly) {
+        var visited = new BitSet(links.size());
+        var candidates = new PriorityQueue<>(BY_SIMILARITY.reversed());
+        var results = new PriorityQueue<>(BY_SIMILARITY);
+        for (var entry : entryPoints) {
+            visited.set(entry.ordinal());
+            candidates.add(entry);
+            if (!liveOnly || !store.isDeleted(entry.ordinal())) {
+                results.add(entry);
+                if (results.size() > ef) {
+                    results.poll();
+                }
+            }
+        }
+
+        while (!candidates.isEmpty()) {
+            var closest = candidates.poll();
+            if (results.size() >= ef && closest.similarity() < results.peek().similarity()) {
+                break;
+            }
+            var closestLinks = links.get(closest.ordinal())[layer];
+            for (int i = 1; i <= closestLinks[0]; i++) {
+                var neighbour = closestLinks[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                var similarity = store.similarity(query, neighbour, scratch);
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    var candidate = new Candidate(neighbour, similarity);
+                    candidates.add(candidate);
+                    if (!liveOnly || !store.isDeleted(neighbour)) {
+                        results.add(candidate);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        var sortedResults = new ArrayList<>(results);
+        sortedResults.sort(BY_SIMILARITY.reversed());
+        return sortedResults;
+    }
+
+    // Adds a link to a node, and prunes its neighbours if it exceeds the maximum number of neighbours of the layer
+    private void link(int ordinal, int neighbour, int layer, QuantizedEmbeddingStore.Scratch scratch) {
+        var nodeLinks = links.get(ordinal)[layer];
+        if (nodeLinks[0] < nodeLinks.length - 1) {
+            nodeLinks[++nodeLinks[0]] = neighbour;
+            return;
+        }
+
+        var vector = store.vectorAt(ordinal);
+        var candidates = new ArrayList<Candidate>(nodeLinks.length);
+        candidates.add(new Candidate(neighbour, store.similarity(vector, neighbour, scratch)));
+        for (int i = 1; i <= nodeLinks[0]; i++) {
+            candidates.add(new Candidate(nodeLinks[i], store.similarity(vector, nodeLinks[i], scratch)));
+        }
+        candidates.sort(BY_SIMILARITY.reversed());
+        var selected = selectNeighbours(candidates, nodeLinks.length - 1, scratch);
+        nodeLinks[0] = selected.size();
+        for (int i = 0; i < selected.size(); i++) {
+            nodeLinks[i + 1] = selected.get(i).ordinal();
+        }
+    }
+
+    // Heuristic of the paper, preferring candidates closer to the node than to the already selected neighbours to
+    // connect clusters, filled up with the closest of the discarded candidates
+    private List<Candidate> selectNeighbours(List<Candidate> sortedCandidates, int maxNeighbours, QuantizedEmbeddingStore.Scratch scratch) {
+        var selected = new ArrayList<Candidate>(maxNeighbours);
+        var selectedVectors = new ArrayList<float[]>(maxNeighbours);
+        var discarded = new ArrayList<Candidate>();
+        for (var candidate : sortedCandidates) {
+            if (selected.size() == maxNeighbours) {
+                break;
+            }
+            var diverse = true;
+            for (var selectedVector : selectedVectors) {
+                if (store.similarity(selectedVector, candidate.ordinal(), scratch) > candidate.similarity()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+                selectedVectors.add(store.vectorAt(candidate.ordinal()));
+            } else {
+                discarded.add(candidate);
+            }
+        }
+        for (int i = 0; i < discarded.size() && selected.size() < maxNeighbours; i++) {
+            selected.add(discarded.get(i));
+        }
+        return selected;
+    }
+
+    private int maxNeighbours(int layer) {
+        return layer == 0 ? 2 * parameters.m() : parameters.m();
+    }
+
+    record Candidate(int ordinal, float similarity) {
+    }
+}
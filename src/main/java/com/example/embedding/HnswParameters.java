@@ -0,0 +1,19 @@
+package com.example.embedding;
+
+/**
+ * Parameters of the HNSW index of the {@link QuantizedEmbeddingStore}.
+ *
+ * @param m              maximum number of neighbours per node on the upper layers, twice as many on the bottom layer.
+ *                       Higher values improve recall for high-dimensional embeddings at the cost of memory and insert time.
+ * @param efConstruction size of the candidate list while inserting, higher values improve the quality of the graph
+ * @param efSearch       size of the candidate list while searching, trading latency for recall
+ */
+public record HnswParameters(int m, int efConstruction, int efSearch) {
+
+    public HnswParameters {
+        if (m < 2 || efConstruction < 1 || efSearch < 1) {
+            throw new IllegalArgumentException("Invalid HNSW parameters m=%d, efConstruction=%d, efSearch=%d"
+                    .formatted(m, efConstruction, efSearch));
+        }
+    }
+}
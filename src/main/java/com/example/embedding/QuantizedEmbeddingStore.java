@@ -0,0 +1,723 @@
+package com.example.embedding;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Local {@link EmbeddingStore} for single-node deployments without Redis.
+ * <p>
+ * Vectors are normalized on insert, so that the cosine similarity is a dot product, and held in contiguous off-heap
+ * chunks, either as floats or int8 quantized with a scale per vector. Snapshots are written to a file, whose vectors
+ * are memory-mapped when the store is loaded again, so that startup doesn't depend on the number of stored vectors.
+ * Text segments of loaded snapshots are only read from the file if they are part of a search result.
+ * <p>
+ * Searches without a filter use an optional {@link HnswIndex}, which is updated incrementally on insert, and rebuilt in
+ * the background after a snapshot was loaded. Until it's complete, and for filtered searches, all vectors are scanned.
+ * <p>
+ * Replaced and removed vectors are only marked as deleted. Once they are the majority, the store is compacted in the
+ * background by writing a snapshot of the live vectors and loading it again.
+ */
+public class QuantizedEmbeddingStore implements EmbeddingStore<TextSegment>, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(QuantizedEmbeddingStore.class);
+    private static final int MAGIC = 0x52464553;
+    private static final int VERSION = 1;
+    static final int CHUNK_CAPACITY = 4096;
+
+    private final Path snapshotFile;
+    private final boolean quantized;
+    private final VectorScorer vectorScorer = VectorScorer.create();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService snapshotExecutor;
+    private final HnswIndex hnswIndex;
+
+    private final List<VectorChunk> chunks = new ArrayList<>();
+    private final List<String> ids = new ArrayList<>();
+    private final Map<String, Integer> ordinalsById = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    // Segments of vectors added after the snapshot was loaded, indexed by ordinal minus the number of loaded vectors
+    private final List<TextSegment> segments = new ArrayList<>();
+
+    private int dimension;
+    private int size;
+    private FileChannel loadedSnapshotChannel;
+    private long[] loadedSegmentOffsets = new long[0];
+    private volatile boolean dirty;
+    private boolean indexingInBackground;
+    private boolean compactionPending;
+
+    // Store with exact search only
+    public QuantizedEmbeddingStore(Path snapshotFile, boolean quantized, Duration snapshotInterval) throws IOException {
+        this(snapshotFile, quantized, snapshotInterval, null);
+    }
+
+    public QuantizedEmbeddingStore(Path snapshotFile, boolean quantized, Duration snapshotInterval, HnswParameters hnswParameters) throws IOException {
+        this.snapshotFile = snapshotFile.toAbsolutePath();
+        this.quantized = quantized;
+        this.hnswIndex = hnswParameters == null ? null : new HnswIndex(this, hnswParameters);
+        Files.createDirectories(this.snapshotFile.getParent());
+        if (Files.exists(this.snapshotFile)) {
+            load();
+        }
+        if (hnswIndex != null && size > 0) {
+            // The index isn't part of the snapshot, so that startup doesn't have to wait for it
+            startIndexingInBackground();
+        }
+
+        this.snapshotExecutor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("embedding-store-snapshot").daemon().factory());
+        this.snapshotExecutor.scheduleWithFixedDelay(this::snapshotQuietly, snapshotInterval.toMillis(), snapshotInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        var id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        var id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        var ids = embeddings.stream().map(embedding -> UUID.randomUUID().toString()).toList();
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
+        var ids = embeddings.stream().map(embedding -> UUID.randomUUID().toString()).toList();
+        addAll(ids, embeddings, textSegments);
+        return ids;
+    }
+
+    // Existing entries with the same id are replaced, unless they are unchanged.
+    // All embeddings are validated before the first one is added, so that an invalid batch doesn't leave a part of it behind.
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        lock.writeLock().lock();
+        try {
+            var batchDimension = dimension;
+            for (var embedding : embeddings) {
+                if (batchDimension == 0) {
+                    batchDimension = embedding.vector().length;
+                } else if (embedding.vector().length != batchDimension) {
+                    throw new IllegalArgumentException("Embedding dimension %d doesn't match store dimension %d"
+                            .formatted(embedding.vector().length, batchDimension));
+                }
+            }
+            dimension = batchDimension;
+            for (int i = 0; i < ids.size(); i++) {
+                var vector = embeddings.get(i).vector();
+                var id = ids.get(i);
+                var normalizedVector = normalize(vector);
+                var segment = textSegments == null ? null : textSegments.get(i);
+                // Unchanged entries are kept in place, e.g. if a document is ingested again after a restart, instead of
+                // leaving a deleted copy of each of them behind
+                var ordinal = ordinalsById.get(id);
+                if (ordinal != null && hasVector(ordinal, normalizedVector) && Objects.equals(segmentAt(ordinal), segment)) {
+                    continue;
+                }
+                removeOrdinal(id);
+                append(id, normalizedVector, segment);
+                dirty = true;
+            }
+            compactIfMostlyDeleted();
+            if (hnswIndex != null && !indexingInBackground) {
+                indexPending(Integer.MAX_VALUE);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            ids.forEach(this::removeOrdinal);
+            dirty = true;
+            compactIfMostlyDeleted();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        lock.writeLock().lock();
+        try {
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                var segment = deleted.get(ordinal) ? null : segmentAt(ordinal);
+                if (segment != null && filter.test(segment.metadata())) {
+                    removeOrdinal(ids.get(ordinal));
+                }
+            }
+            dirty = true;
+            compactIfMostlyDeleted();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            ordinalsById.clear();
+            deleted.set(0, size);
+            dirty = true;
+            compactIfMostlyDeleted();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Approximate search with the HNSW index if possible, otherwise exact search over all vectors,
+    // both with the relevance score and min score semantics of the InMemoryEmbeddingStore
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+
+            var query = normalize(request.queryEmbedding().vector());
+            var topMatches = new PriorityQueue<ScoredOrdinal>(Comparator.comparingDouble(ScoredOrdinal::score));
+            var scratch = newScratch();
+            if (canUseIndex(request)) {
+                for (var candidate : hnswIndex.search(query, request.maxResults())) {
+                    var score = relevanceScore(candidate.similarity());
+                    if (score < request.minScore() || topMatches.size() == request.maxResults()) {
+                        break;
+                    }
+                    topMatches.offer(new ScoredOrdinal(candidate.ordinal(), score));
+                }
+                return new EmbeddingSearchResult<>(toMatches(topMatches));
+            }
+
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                if (deleted.get(ordinal)) {
+                    continue;
+                }
+                var score = relevanceScore(similarity(query, ordinal, scratch));
+                if (score < request.minScore()
+                        || (topMatches.size() == request.maxResults() && score <= topMatches.peek().score())
+                        || !matches(request.filter(), ordinal)) {
+                    continue;
+                }
+                topMatches.offer(new ScoredOrdinal(ordinal, score));
+                if (topMatches.size() > request.maxResults()) {
+                    topMatches.poll();
+                }
+            }
+            return new EmbeddingSearchResult<>(toMatches(topMatches));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Filtered searches could miss matches in the candidates of the index
+    private boolean canUseIndex(EmbeddingSearchRequest request) {
+        return hnswIndex != null && hnswIndex.size() == size && request.filter() == null;
+    }
+
+    // Whether searches without a filter use the index, i.e. it contains all vectors
+    boolean isIndexed() {
+        lock.readLock().lock();
+        try {
+            return hnswIndex != null && hnswIndex.size() == size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void startIndexingInBackground() {
+        if (!indexingInBackground) {
+            indexingInBackground = true;
+            Thread.ofPlatform().name("embedding-store-indexer").daemon().start(this::indexInBackground);
+        }
+    }
+
+    // Also compacts the store, which clears the index, so that the index is rebuilt by the same thread afterwards
+    private void indexInBackground() {
+        var startTime = System.nanoTime();
+        while (true) {
+            lock.writeLock().lock();
+            try {
+                if (compactionPending) {
+                    compactionPending = false;
+                    compactQuietly();
+                }
+                if (hnswIndex == null) {
+                    indexingInBackground = false;
+                    return;
+                }
+                // Inserts in batches, so that searches and writes aren't blocked for long
+                indexPending(1024);
+                if (hnswIndex.size() == size) {
+                    indexingInBackground = false;
+                    log.info("Indexed {} embeddings in {} ms", size, (System.nanoTime() - startTime) / 1_000_000);
+                    return;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void indexPending(int maxCount) {
+        for (int count = 0; count < maxCount && hnswIndex.size() < size; count++) {
+            hnswIndex.insert(hnswIndex.size());
+        }
+    }
+
+    // Writes the live entries to a temporary file, which atomically replaces the previous snapshot
+    public void snapshot() throws IOException {
+        lock.readLock().lock();
+        try {
+            if (!dirty) {
+                return;
+            }
+
+            var liveOrdinals = new ArrayList<Integer>(ordinalsById.size());
+            for (int ordinal = deleted.nextClearBit(0); ordinal < size; ordinal = deleted.nextClearBit(ordinal + 1)) {
+                liveOrdinals.add(ordinal);
+            }
+
+            var scratch = newScratch();
+            var tempFile = Files.createTempFile(snapshotFile.getParent(), snapshotFile.getFileName().toString(), ".tmp");
+            try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(dimension);
+                output.writeBoolean(quantized);
+                output.writeInt(liveOrdinals.size());
+                for (var ordinal : liveOrdinals) {
+                    var chunk = chunks.get(ordinal / CHUNK_CAPACITY);
+                    var offset = ordinal % CHUNK_CAPACITY;
+                    if (quantized) {
+                        var vector = scratch.bytes();
+                        chunk.vectors().get(offset * dimension, vector);
+                        output.write(vector);
+                    } else {
+                        var vector = scratch.floats();
+                        chunk.floatVectors().get(offset * dimension, vector);
+                        for (var value : vector) {
+                            output.writeFloat(value);
+                        }
+                    }
+                }
+                if (quantized) {
+                    for (var ordinal : liveOrdinals) {
+                        output.writeFloat(chunks.get(ordinal / CHUNK_CAPACITY).scales().get(ordinal % CHUNK_CAPACITY));
+                    }
+                }
+                for (var ordinal : liveOrdinals) {
+                    writeRecord(output, ids.get(ordinal), segmentAt(ordinal));
+                }
+            }
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+            log.info("Snapshot of {} embeddings written to {}", liveOrdinals.size(), snapshotFile);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        snapshotExecutor.shutdownNow();
+        lock.writeLock().lock();
+        try {
+            // The snapshot only contains the live entries, which makes a pending compaction obsolete
+            compactionPending = false;
+            snapshot();
+            if (loadedSnapshotChannel != null) {
+                loadedSnapshotChannel.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Deleted vectors slow down searches, and their ordinals stay in the index, so they are dropped once they are the majority.
+    // Writes don't wait for the compaction, which is done by the background indexing thread.
+    private void compactIfMostlyDeleted() {
+        if (ordinalsById.size() * 2 >= size || compactionPending) {
+            return;
+        }
+        compactionPending = true;
+        startIndexingInBackground();
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException e) {
+            log.warn("Compacting embedding store failed: {}", e.getMessage());
+        }
+    }
+
+    // Writes a snapshot of the live entries and loads it again, and clears the index, which is rebuilt like at startup
+    private void compact() throws IOException {
+        var deletedCount = size - ordinalsById.size();
+        dirty = true;
+        snapshot();
+        if (loadedSnapshotChannel != null) {
+            loadedSnapshotChannel.close();
+        }
+        chunks.clear();
+        ids.clear();
+        ordinalsById.clear();
+        deleted.clear();
+        segments.clear();
+        loadedSegmentOffsets = new long[0];
+        size = 0;
+        load();
+        log.info("Compacted embedding store by dropping {} deleted embeddings", deletedCount);
+        if (hnswIndex != null) {
+            hnswIndex.clear();
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            log.warn("Writing snapshot of embedding store failed: {}", e.getMessage());
+        }
+    }
+
+    private void append(String id, float[] vector, TextSegment segment) {
+        if (size == chunks.size() * CHUNK_CAPACITY) {
+            chunks.add(VectorChunk.allocate(dimension, quantized));
+        }
+        var chunk = chunks.get(size / CHUNK_CAPACITY);
+        var offset = size % CHUNK_CAPACITY;
+        if (quantized) {
+            var quantizedVector = QuantizedVector.of(vector);
+            chunk.vectors().put(offset * dimension, quantizedVector.values());
+            chunk.scales().put(offset, quantizedVector.scale());
+        } else {
+            chunk.floatVectors().put(offset * dimension, vector);
+        }
+
+        ids.add(id);
+        segments.add(segment);
+        ordinalsById.put(id, size);
+        size++;
+    }
+
+    private void removeOrdinal(String id) {
+        var ordinal = ordinalsById.remove(id);
+        if (ordinal != null) {
+            deleted.set(ordinal);
+        }
+    }
+
+    // Whether the stored vector of the ordinal is the same as the normalized vector, after quantization if quantized
+    private boolean hasVector(int ordinal, float[] normalizedVector) {
+        var chunk = chunks.get(ordinal / CHUNK_CAPACITY);
+        var offset = ordinal % CHUNK_CAPACITY;
+        if (quantized) {
+            var quantizedVector = QuantizedVector.of(normalizedVector);
+            var storedVector = new byte[dimension];
+            chunk.vectors().get(offset * dimension, storedVector);
+            return chunk.scales().get(offset) == quantizedVector.scale() && Arrays.equals(storedVector, quantizedVector.values());
+        }
+        var storedVector = new float[dimension];
+        chunk.floatVectors().get(offset * dimension, storedVector);
+        return Arrays.equals(storedVector, normalizedVector);
+    }
+
+    // Number of vectors marked as deleted, which are dropped by the next compaction
+    int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return size - ordinalsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean isDeleted(int ordinal) {
+        return deleted.get(ordinal);
+    }
+
+    // Buffer for the stored vectors of similarity computations. Created per search or insert instead of per thread,
+    // as request threads are virtual threads, which aren't reused.
+    Scratch newScratch() {
+        return quantized ? new Scratch(null, new byte[dimension]) : new Scratch(new float[dimension], null);
+    }
+
+    float similarity(float[] normalizedQuery, int ordinal, Scratch scratch) {
+        var chunk = chunks.get(ordinal / CHUNK_CAPACITY);
+        var offset = ordinal % CHUNK_CAPACITY;
+        if (quantized) {
+            var vector = scratch.bytes();
+            chunk.vectors().get(offset * dimension, vector);
+            return chunk.scales().get(offset) * vectorScorer.dot(normalizedQuery, vector);
+        }
+        var vector = scratch.floats();
+        chunk.floatVectors().get(offset * dimension, vector);
+        return vectorScorer.dot(normalizedQuery, vector);
+    }
+
+    float[] vectorAt(int ordinal) {
+        var chunk = chunks.get(ordinal / CHUNK_CAPACITY);
+        var offset = ordinal % CHUNK_CAPACITY;
+        var vector = new float[dimension];
+        if (quantized) {
+            var quantizedVector = new byte[dimension];
+            chunk.vectors().get(offset * dimension, quantizedVector);
+            var scale = chunk.scales().get(offset);
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = quantizedVector[i] * scale;
+            }
+        } else {
+            chunk.floatVectors().get(offset * dimension, vector);
+        }
+        return vector;
+    }
+
+    private boolean matches(Filter filter, int ordinal) {
+        if (filter == null) {
+            return true;
+        }
+        var segment = segmentAt(ordinal);
+        return segment != null && filter.test(segment.metadata());
+    }
+
+    private List<EmbeddingMatch<TextSegment>> toMatches(PriorityQueue<ScoredOrdinal> topMatches) {
+        var matches = new ArrayList<EmbeddingMatch<TextSegment>>(topMatches.size());
+        while (!topMatches.isEmpty()) {
+            var match = topMatches.poll();
+            matches.add(0, new EmbeddingMatch<>(match.score(), ids.get(match.ordinal()), Embedding.from(vectorAt(match.ordinal())),
+                    segmentAt(match.ordinal())));
+        }
+        return matches;
+    }
+
+    private TextSegment segmentAt(int ordinal) {
+        if (ordinal >= loadedSegmentOffsets.length) {
+            return segments.get(ordinal - loadedSegmentOffsets.length);
+        }
+        try {
+            var lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+            readFully(lengthBuffer, loadedSegmentOffsets[ordinal]);
+            var textLength = lengthBuffer.getInt(0);
+            if (textLength < 0) {
+                return null;
+            }
+            var textBuffer = ByteBuffer.allocate(textLength + Integer.BYTES);
+            readFully(textBuffer, loadedSegmentOffsets[ordinal] + Integer.BYTES);
+            var text = new String(textBuffer.array(), 0, textLength, StandardCharsets.UTF_8);
+            var metadataBuffer = ByteBuffer.allocate(textBuffer.getInt(textLength));
+            readFully(metadataBuffer, loadedSegmentOffsets[ordinal] + Integer.BYTES + textBuffer.capacity());
+            Map<String, Object> metadata = objectMapper.readValue(metadataBuffer.array(), new TypeReference<>() {
+            });
+            return TextSegment.from(text, Metadata.from(metadata));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (loadedSnapshotChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of embedding store snapshot " + snapshotFile);
+            }
+        }
+    }
+
+    private void writeRecord(DataOutputStream output, String id, TextSegment segment) throws IOException {
+        var idBytes = id.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(idBytes.length);
+        output.write(idBytes);
+        if (segment == null) {
+            output.writeInt(-1);
+            return;
+        }
+        var textBytes = segment.text().getBytes(StandardCharsets.UTF_8);
+        output.writeInt(textBytes.length);
+        output.write(textBytes);
+        var metadataBytes = objectMapper.writeValueAsBytes(segment.metadata().toMap());
+        output.writeInt(metadataBytes.length);
+        output.write(metadataBytes);
+    }
+
+    // Maps the vectors of the snapshot chunk by chunk and reads the ids, while segments are only read on demand
+    private void load() throws IOException {
+        loadedSnapshotChannel = FileChannel.open(snapshotFile, StandardOpenOption.READ);
+        var header = ByteBuffer.allocate(4 * Integer.BYTES + 1);
+        readFully(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported embedding store snapshot " + snapshotFile);
+        }
+        var snapshotQuantized = header.get(3 * Integer.BYTES) != 0;
+        if (snapshotQuantized != quantized) {
+            throw new IllegalStateException("Embedding store snapshot %s was written with quantized=%s, delete it or change the configuration"
+                    .formatted(snapshotFile, snapshotQuantized));
+        }
+        dimension = header.getInt(2 * Integer.BYTES);
+        var count = header.getInt(3 * Integer.BYTES + 1);
+
+        var bytesPerVector = quantized ? dimension : dimension * Float.BYTES;
+        var vectorsOffset = (long) header.capacity();
+        var scalesOffset = vectorsOffset + (long) count * bytesPerVector;
+        for (int first = 0; first < count; first += CHUNK_CAPACITY) {
+            var chunkSize = Math.min(CHUNK_CAPACITY, count - first);
+            var vectors = loadedSnapshotChannel.map(FileChannel.MapMode.READ_ONLY, vectorsOffset + (long) first * bytesPerVector,
+                    (long) chunkSize * bytesPerVector);
+            var scales = quantized
+                    ? loadedSnapshotChannel.map(FileChannel.MapMode.READ_ONLY, scalesOffset + (long) first * Float.BYTES,
+                    (long) chunkSize * Float.BYTES).asFloatBuffer()
+                    : null;
+            chunks.add(new VectorChunk(vectors, quantized ? null : vectors.asFloatBuffer(), scales));
+        }
+        // The last chunk is copied to the heap if it's partially filled, so that new vectors can be appended
+        if (count % CHUNK_CAPACITY != 0) {
+            var lastChunk = chunks.remove(chunks.size() - 1);
+            var writableChunk = VectorChunk.allocate(dimension, quantized);
+            writableChunk.vectors().put(0, lastChunk.vectors(), 0, lastChunk.vectors().capacity());
+            if (quantized) {
+                writableChunk.scales().put(0, lastChunk.scales(), 0, lastChunk.scales().capacity());
+            }
+            chunks.add(writableChunk);
+        }
+
+        var recordsOffset = scalesOffset + (quantized ? (long) count * Float.BYTES : 0);
+        loadedSegmentOffsets = new long[count];
+        var input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(loadedSnapshotChannel.position(recordsOffset)), 1 << 16));
+        var position = recordsOffset;
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            var idBytes = new byte[input.readInt()];
+            input.readFully(idBytes);
+            var id = new String(idBytes, StandardCharsets.UTF_8);
+            position += Integer.BYTES + idBytes.length;
+            loadedSegmentOffsets[ordinal] = position;
+
+            var textLength = input.readInt();
+            position += Integer.BYTES;
+            if (textLength >= 0) {
+                input.skipNBytes(textLength);
+                var metadataLength = input.readInt();
+                input.skipNBytes(metadataLength);
+                position += textLength + Integer.BYTES + metadataLength;
+            }
+            ids.add(id);
+            ordinalsById.put(id, ordinal);
+        }
+        size = count;
+        log.info("Loaded {} embeddings from snapshot {}", count, snapshotFile);
+    }
+
+    private static float[] normalize(float[] vector) {
+        var norm = 0.0;
+        for (var value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        var normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = norm == 0 ? 0 : (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    // Same as dev.langchain4j.store.embedding.RelevanceScore.fromCosineSimilarity, clamped for quantization errors
+    private static double relevanceScore(float cosineSimilarity) {
+        return (Math.clamp(cosineSimilarity, -1f, 1f) + 1) / 2.0;
+    }
+
+    private record ScoredOrdinal(int ordinal, double score) {
+    }
+
+    record Scratch(float[] floats, byte[] bytes) {
+    }
+
+    private record QuantizedVector(byte[] values, float scale) {
+
+        // Symmetric int8 quantization with the maximum absolute value of the vector mapped to 127
+        static QuantizedVector of(float[] vector) {
+            var maxAbsoluteValue = 0f;
+            for (var value : vector) {
+                maxAbsoluteValue = Math.max(maxAbsoluteValue, Math.abs(value));
+            }
+            var scale = maxAbsoluteValue == 0 ? 1f : maxAbsoluteValue / 127f;
+            var values = new byte[vector.length];
+            for (int i = 0; i < vector.length; i++) {
+                values[i] = (byte) Math.round(vector[i] / scale);
+            }
+            return new QuantizedVector(values, scale);
+        }
+    }
+
+    private record VectorChunk(ByteBuffer vectors, FloatBuffer floatVectors, FloatBuffer scales) {
+
+        static VectorChunk allocate(int dimension, boolean quantized) {
+            if (quantized) {
+                return new VectorChunk(ByteBuffer.allocateDirect(CHUNK_CAPACITY * dimension), null,
+                        ByteBuffer.allocateDirect(CHUNK_CAPACITY * Float.BYTES).asFloatBuffer());
+            }
+            var vectors = ByteBuffer.allocateDirect(CHUNK_CAPACITY * dimension * Float.BYTES);
+            return new VectorChunk(vectors, vectors.asFloatBuffer(), null);
+        }
+    }
+}
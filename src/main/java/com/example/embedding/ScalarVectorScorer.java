@@ -0,0 +1,22 @@
+package com.example.embedding;
+
+class ScalarVectorScorer implements VectorScorer {
+
+    @Override
+    public float dot(float[] query, float[] vector) {
+        var sum = 0f;
+        for (int i = 0; i < query.length; i++) {
+            sum += query[i] * vector[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] query, byte[] vector) {
+        var sum = 0f;
+        for (int i = 0; i < query.length; i++) {
+            sum += query[i] * vector[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.embedding;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+// Vectorized dot products with the JDK Vector API, with scalar loops for the remaining elements
+class SimdVectorScorer implements VectorScorer {
+
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+    // Byte species with the same number of lanes as the float species, for the conversion of int8 vectors.
+    // Not available for float species with less than 8 lanes, as the smallest vector shape has 64 bits.
+    private static final VectorSpecies<Byte> BYTE_SPECIES = FLOAT_SPECIES.length() >= 8
+            ? VectorSpecies.of(byte.class, VectorShape.forBitSize(FLOAT_SPECIES.length() * Byte.SIZE))
+            : null;
+
+    private final ScalarVectorScorer scalarVectorScorer = new ScalarVectorScorer();
+
+    @Override
+    public float dot(float[] query, float[] vector) {
+        var sum = FloatVector.zero(FLOAT_SPECIES);
+        var upperBound = FLOAT_SPECIES.loopBound(query.length);
+        int i = 0;
+        for (; i < upperBound; i += FLOAT_SPECIES.length()) {
+            var queryPart = FloatVector.fromArray(FLOAT_SPECIES, query, i);
+            var vectorPart = FloatVector.fromArray(FLOAT_SPECIES, vector, i);
+            sum = queryPart.fma(vectorPart, sum);
+        }
+        var result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < query.length; i++) {
+            result += query[i] * vector[i];
+        }
+        return result;
+    }
+
+    @Override
+    public float dot(float[] query, byte[] vector) {
+        if (BYTE_SPECIES == null) {
+            return scalarVectorScorer.dot(query, vector);
+        }
+
+        var sum = FloatVector.zero(FLOAT_SPECIES);
+        var upperBound = FLOAT_SPECIES.loopBound(query.length);
+        int i = 0;
+        for (; i < upperBound; i += FLOAT_SPECIES.length()) {
+            var queryPart = FloatVector.fromArray(FLOAT_SPECIES, query, i);
+            var vectorPart = (FloatVector) ByteVector.fromArray(BYTE_SPECIES, vector, i)
+                    .convertShape(VectorOperators.B2F, FLOAT_SPECIES, 0);
+            sum = queryPart.fma(vectorPart, sum);
+        }
+        var result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < query.length; i++) {
+            result += query[i] * vector[i];
+        }
+        return result;
+    }
+}
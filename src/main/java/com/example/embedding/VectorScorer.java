@@ -0,0 +1,23 @@
+package com.example.embedding;
+
+import org.slf4j.LoggerFactory;
+
+// Dot products of a query vector with stored float or int8 quantized vectors
+interface VectorScorer {
+
+    float dot(float[] query, float[] vector);
+
+    float dot(float[] query, byte[] vector);
+
+    // Uses the JDK Vector API if the incubator module is available (--add-modules jdk.incubator.vector)
+    static VectorScorer create() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return new SimdVectorScorer();
+            } catch (LinkageError e) {
+                LoggerFactory.getLogger(VectorScorer.class).warn("Vector API not usable, falling back to scalar scoring: {}", e.getMessage());
+            }
+        }
+        return new ScalarVectorScorer();
+    }
+}
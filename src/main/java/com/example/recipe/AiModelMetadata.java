@@ -0,0 +1,129 @@
+package com.example.recipe;
+
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.image.ImageModel;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.springframework.util.StringUtils.capitalize;
+
+// Names of the models of the active AI providers, e.g. "OpenAi (Chat: Gpt-4o)", shown in the UI.
+// Resolved by reflection once at startup, as the models don't change at runtime.
+record AiModelMetadata(List<String> modelNames) {
+
+    private static final Logger log = LoggerFactory.getLogger(AiModelMetadata.class);
+
+    String description() {
+        return String.join(" & ", modelNames);
+    }
+
+    static AiModelMetadata resolve(ChatModel chatModel, Optional<EmbeddingModel> embeddingModel, Optional<ImageModel> imageModel) {
+        var modelNames = new ArrayList<String>();
+
+        // Chat Models, one per provider if requests are routed to several providers
+        for (var model : unwrap(chatModel)) {
+            modelNames.add(describe(model, "ChatModel", "Chat"));
+        }
+
+        // Embedding Model
+        embeddingModel.ifPresent(model -> modelNames.add(describe(model, "EmbeddingModel", "Embedding")));
+
+        // Image Models
+        for (var model : imageModel.map(AiModelMetadata::unwrap).orElse(List.of())) {
+            modelNames.add(describe(model, "ImageModel", "Image"));
+        }
+
+        log.info("AI models: {}", modelNames);
+        return new AiModelMetadata(List.copyOf(modelNames));
+    }
+
+    // Provider and name of a model, e.g. "OpenAi:text-embedding-3-small", to tell apart the results of different models
+    static String identify(Object model, String classNameSuffix) {
+        var modelName = extractModelName(model);
+        return modelName != null ? provider(model, classNameSuffix) + ":" + modelName : provider(model, classNameSuffix);
+    }
+
+    private static String describe(Object model, String classNameSuffix, String modelType) {
+        var provider = provider(model, classNameSuffix);
+        log.debug("{} model class: {}", modelType, model.getClass().getName());
+        var modelName = extractModelName(model);
+        return modelName != null ? "%s (%s: %s)".formatted(provider, modelType, capitalize(modelName)) : "%s (%s)".formatted(provider, modelType);
+    }
+
+    private static String provider(Object model, String classNameSuffix) {
+        return model.getClass().getSimpleName().replace(classNameSuffix, "");
+    }
+
+    // The auto-configured models of the AI providers, instead of e.g. the bulkhead and router around them
+    private static List<Object> unwrap(Object model) {
+        if (model instanceof RecipeModelConfiguration.DelegatingModel delegatingModel) {
+            return delegatingModel.delegates().stream().flatMap(delegate -> unwrap(delegate).stream()).toList();
+        }
+        return List.of(model);
+    }
+
+    private static String extractModelName(Object model) {
+        // Try multiple approaches to get the model name
+        String[] possibleFields = {"deploymentName", "modelName", "model", "deploymentId"};
+
+        log.debug("Extracting model name from: {}", model.getClass().getName());
+
+        // First try the model object itself
+        for (String fieldName : possibleFields) {
+            try {
+                Object fieldValue = FieldUtils.readField(model, fieldName, true);
+                if (fieldValue instanceof String name && !name.isEmpty()) {
+                    log.debug("Found model name '{}' in field '{}'", name, fieldName);
+                    return name;
+                }
+            } catch (Exception e) {
+                log.debug("Failed to read field '{}': {}", fieldName, e.getMessage());
+            }
+        }
+
+        // Then try the default request parameters if it's a chat model
+        if (model instanceof ChatModel) {
+            try {
+                var defaultOptions = ((ChatModel) model).defaultRequestParameters();
+                log.debug("Checking default request parameters: {}", defaultOptions.getClass().getName());
+                for (String fieldName : possibleFields) {
+                    try {
+                        Object fieldValue = FieldUtils.readField(defaultOptions, fieldName, true);
+                        if (fieldValue instanceof String name && !name.isEmpty()) {
+                            log.debug("Found model name '{}' in default options field '{}'", name, fieldName);
+                            return name;
+                        }
+                    } catch (Exception e) {
+                        log.debug("Failed to read default options field '{}': {}", fieldName, e.getMessage());
+                    }
+                }
+            } catch (Exception e) {
+                log.debug("Failed to get default request parameters: {}", e.getMessage());
+            }
+        }
+
+        // Try toString method as last resort
+        try {
+            String toString = model.toString();
+            if (toString.contains("deploymentName=")) {
+                String name = toString.substring(toString.indexOf("deploymentName=") + 15);
+                name = name.substring(0, name.indexOf(name.contains(",") ? "," : "}"));
+                if (!name.isEmpty() && !name.equals("null")) {
+                    log.debug("Extracted model name '{}' from toString", name);
+                    return name;
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Failed to extract from toString: {}", e.getMessage());
+        }
+
+        log.debug("No model name found for {}", model.getClass().getName());
+        return null;
+    }
+}
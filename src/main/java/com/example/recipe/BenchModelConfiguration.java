@@ -0,0 +1,228 @@
+package com.example.recipe;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.image.Image;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.image.ImageModel;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Deterministic in-process models for benchmarks and load tests, which measure the overhead of the application itself
+// without network access to AI providers. They are routed like the auto-configured models of a provider named "bench".
+// The latency and error rate of each model type are configurable, failures are evenly spread over the calls.
+@Profile("bench")
+@Configuration
+class BenchModelConfiguration {
+
+    private static final String MODEL_NAME = "bench";
+
+    private static final String RECIPE_JSON = """
+            {"name": "Bacon and onion tart", "description": "A savory tart with crispy bacon and caramelized onions",
+            "ingredients": ["200 g bacon", "2 onions", "1 puff pastry sheet", "2 eggs", "100 ml cream"],
+            "instructions": ["Fry the bacon and onions", "Whisk the eggs and cream", "Fill the pastry and bake the tart for 30 minutes"],
+            "imageUrl": ""}
+            """;
+    // Streamed in chunks of roughly the size of a token
+    private static final int CHARACTERS_PER_TOKEN = 4;
+
+    @Bean
+    ChatModel benchChatModel(List<ChatModelListener> listeners,
+                             @Value("${app.bench.chat.latency}") Duration latency,
+                             @Value("${app.bench.chat.error-rate}") double errorRate) {
+        return new BenchChatModel(MODEL_NAME, new BenchModelBehavior("chat", latency, errorRate), listeners);
+    }
+
+    @Bean
+    StreamingChatModel benchStreamingChatModel(List<ChatModelListener> listeners,
+                                               @Value("${app.bench.chat.latency}") Duration latency,
+                                               @Value("${app.bench.chat.error-rate}") double errorRate) {
+        return new BenchStreamingChatModel(MODEL_NAME, new BenchModelBehavior("chat", latency, errorRate), listeners);
+    }
+
+    @Bean
+    EmbeddingModel benchEmbeddingModel(@Value("${app.bench.embedding.dimension}") int dimension,
+                                       @Value("${app.bench.embedding.latency}") Duration latency,
+                                       @Value("${app.bench.embedding.error-rate}") double errorRate) {
+        return new BenchEmbeddingModel(MODEL_NAME, dimension, new BenchModelBehavior("embedding", latency, errorRate));
+    }
+
+    @Bean
+    ImageModel benchImageModel(@Value("${app.bench.image.latency}") Duration latency,
+                               @Value("${app.bench.image.error-rate}") double errorRate) throws IOException {
+        var image = Base64.getEncoder().encodeToString(new ClassPathResource("static/placeholder.png").getContentAsByteArray());
+        return new BenchImageModel(MODEL_NAME, image, new BenchModelBehavior("image", latency, errorRate));
+    }
+
+    // Requests the execution of the first tool once, if tools are specified, and answers with the same recipe otherwise
+    static ChatResponse respond(String modelName, ChatRequest chatRequest) {
+        var inputTokenCount = chatRequest.messages().toString().length() / CHARACTERS_PER_TOKEN;
+        var toolResultsPresent = chatRequest.messages().stream().anyMatch(ToolExecutionResultMessage.class::isInstance);
+        if (!chatRequest.toolSpecifications().isEmpty() && !toolResultsPresent) {
+            var toolExecutionRequest = ToolExecutionRequest.builder()
+                    .id("bench-tool-call")
+                    .name(chatRequest.toolSpecifications().getFirst().name())
+                    .arguments("{}")
+                    .build();
+            return ChatResponse.builder()
+                    .aiMessage(AiMessage.from(toolExecutionRequest))
+                    .modelName(modelName)
+                    .tokenUsage(new TokenUsage(inputTokenCount, 10))
+                    .finishReason(FinishReason.TOOL_EXECUTION)
+                    .build();
+        }
+        return ChatResponse.builder()
+                .aiMessage(AiMessage.from(RECIPE_JSON))
+                .modelName(modelName)
+                .tokenUsage(new TokenUsage(inputTokenCount, RECIPE_JSON.length() / CHARACTERS_PER_TOKEN))
+                .finishReason(FinishReason.STOP)
+                .build();
+    }
+
+    // Feature hashing of the words of a text, so that texts sharing ingredients have similar embeddings
+    static Embedding embed(String text, int dimension) {
+        var vector = new float[dimension];
+        for (var word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}]+")) {
+            if (!word.isEmpty()) {
+                var hash = word.hashCode();
+                vector[Math.floorMod(hash, dimension)] += (hash & 0x40000000) == 0 ? 1 : -1;
+            }
+        }
+        var norm = 0.0;
+        for (var value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            vector[0] = 1;
+            return Embedding.from(vector);
+        }
+        var scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimension; i++) {
+            vector[i] *= scale;
+        }
+        return Embedding.from(vector);
+    }
+
+    // Simulated latency and failures of a model. Every call sleeps for the latency, and the calls at which the cumulative
+    // error rate crosses an integer fail afterwards, e.g. every tenth call for an error rate of 0.1.
+    static final class BenchModelBehavior {
+
+        private final String modelType;
+        private final Duration latency;
+        private final double errorRate;
+        private final AtomicLong calls = new AtomicLong();
+
+        BenchModelBehavior(String modelType, Duration latency, double errorRate) {
+            if (errorRate < 0 || errorRate > 1) {
+                throw new IllegalArgumentException("Error rate of the %s model must be between 0 and 1".formatted(modelType));
+            }
+            this.modelType = modelType;
+            this.latency = latency;
+            this.errorRate = errorRate;
+        }
+
+        void call() {
+            var call = calls.getAndIncrement();
+            if (!latency.isZero()) {
+                try {
+                    Thread.sleep(latency);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted during simulated %s model call".formatted(modelType), e);
+                }
+            }
+            if (Math.floor((call + 1) * errorRate) > Math.floor(call * errorRate)) {
+                throw new IllegalStateException("Simulated %s model failure".formatted(modelType));
+            }
+        }
+    }
+
+    record BenchChatModel(String modelName, BenchModelBehavior behavior, List<ChatModelListener> listeners) implements ChatModel {
+
+        @Override
+        public ChatResponse doChat(ChatRequest chatRequest) {
+            behavior.call();
+            return respond(modelName, chatRequest);
+        }
+
+        @Override
+        public ModelProvider provider() {
+            return ModelProvider.OTHER;
+        }
+    }
+
+    // Responds on another thread like the streaming models of the providers, the latency applies before the first token
+    record BenchStreamingChatModel(String modelName, BenchModelBehavior behavior, List<ChatModelListener> listeners)
+            implements StreamingChatModel {
+
+        @Override
+        public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            Thread.ofVirtual().name("bench-streaming-chat-model").start(() -> {
+                ChatResponse chatResponse;
+                try {
+                    behavior.call();
+                    chatResponse = respond(modelName, chatRequest);
+                } catch (RuntimeException e) {
+                    handler.onError(e);
+                    return;
+                }
+                var text = chatResponse.aiMessage().text();
+                if (text != null) {
+                    for (int i = 0; i < text.length(); i += CHARACTERS_PER_TOKEN) {
+                        handler.onPartialResponse(text.substring(i, Math.min(i + CHARACTERS_PER_TOKEN, text.length())));
+                    }
+                }
+                handler.onCompleteResponse(chatResponse);
+            });
+        }
+
+        @Override
+        public ModelProvider provider() {
+            return ModelProvider.OTHER;
+        }
+    }
+
+    record BenchEmbeddingModel(String modelName, int dimension, BenchModelBehavior behavior) implements EmbeddingModel {
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+            behavior.call();
+            var embeddings = textSegments.stream().map(textSegment -> embed(textSegment.text(), dimension)).toList();
+            var tokenCount = textSegments.stream().mapToInt(textSegment -> textSegment.text().length() / CHARACTERS_PER_TOKEN).sum();
+            return Response.from(embeddings, new TokenUsage(tokenCount));
+        }
+    }
+
+    // Always the placeholder image, which the content-addressed image store keeps only once
+    record BenchImageModel(String modelName, String base64Data, BenchModelBehavior behavior) implements ImageModel {
+
+        @Override
+        public Response<Image> generate(String prompt) {
+            behavior.call();
+            return Response.from(Image.builder().base64Data(base64Data).mimeType("image/png").revisedPrompt(prompt).build());
+        }
+    }
+}
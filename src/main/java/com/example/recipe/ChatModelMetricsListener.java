@@ -0,0 +1,48 @@
+package com.example.recipe;
+
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+// Token usage and errors of the auto-configured chat models, which are registered with all ChatModelListener beans.
+// Counted per model name, as the token costs differ between models.
+@Component
+class ChatModelMetricsListener implements ChatModelListener {
+
+    private final MeterRegistry meterRegistry;
+
+    ChatModelMetricsListener(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void onResponse(ChatModelResponseContext responseContext) {
+        var chatResponse = responseContext.chatResponse();
+        var modelName = modelName(chatResponse.modelName());
+        var tokenUsage = chatResponse.tokenUsage();
+        if (tokenUsage != null) {
+            if (tokenUsage.inputTokenCount() != null) {
+                meterRegistry.counter("model.tokens", "model-name", modelName, "type", "input").increment(tokenUsage.inputTokenCount());
+            }
+            if (tokenUsage.outputTokenCount() != null) {
+                meterRegistry.counter("model.tokens", "model-name", modelName, "type", "output").increment(tokenUsage.outputTokenCount());
+            }
+        }
+        if (chatResponse.aiMessage().hasToolExecutionRequests()) {
+            meterRegistry.counter("model.tool-execution-requests", "model-name", modelName)
+                    .increment(chatResponse.aiMessage().toolExecutionRequests().size());
+        }
+    }
+
+    @Override
+    public void onError(ChatModelErrorContext errorContext) {
+        var modelName = modelName(errorContext.chatRequest().modelName());
+        meterRegistry.counter("model.errors", "model-name", modelName, "exception", errorContext.error().getClass().getSimpleName()).increment();
+    }
+
+    private static String modelName(String modelName) {
+        return modelName != null ? modelName : "unknown";
+    }
+}
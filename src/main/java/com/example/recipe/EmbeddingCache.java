@@ -0,0 +1,135 @@
+package com.example.recipe;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Persistent cache of segment embeddings keyed by the SHA-256 hash of the embedding model (provider, model name and dimension)
+// and the segment text, so that re-ingesting documents after a restart or a wipe of the EmbeddingStore doesn't require any
+// embedding model calls.
+// Entries are appended to a file of records with the hash, the dimension and the vector. Loaded with the first ingestion.
+@Lazy
+@Component
+class EmbeddingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingCache.class);
+    private static final int HASH_LENGTH = 32;
+
+    private final String modelIdentifier;
+    private final Map<String, float[]> embeddings = new ConcurrentHashMap<>();
+    private final FileChannel fileChannel;
+
+    EmbeddingCache(EmbeddingModel embeddingModel, @Value("${app.ingestion.embedding-cache-file}") Path file) throws IOException {
+        // Cached embeddings of a different embedding model must not be used, e.g. after switching the model of the same provider
+        this.modelIdentifier = AiModelMetadata.identify(embeddingModel, "EmbeddingModel") + ":" + embeddingModel.dimension();
+        log.info("Embedding cache for model {}", modelIdentifier);
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.fileChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        load();
+    }
+
+    // Hash of a segment text, used as its identity for deduplication
+    static String hash(String text) {
+        return HexFormat.of().formatHex(sha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Hash of a document file, used as its identity for deduplication
+    static String hash(Path file) throws IOException {
+        var digest = sha256();
+        try (var inputStream = new DigestInputStream(Files.newInputStream(file), digest)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    Optional<Embedding> get(String segmentHash) {
+        return Optional.ofNullable(embeddings.get(key(segmentHash))).map(Embedding::from);
+    }
+
+    void putAll(List<String> segmentHashes, List<Embedding> segmentEmbeddings) throws IOException {
+        var records = new ByteArrayOutputStream();
+        for (int i = 0; i < segmentHashes.size(); i++) {
+            var key = key(segmentHashes.get(i));
+            var vector = segmentEmbeddings.get(i).vector();
+            if (embeddings.putIfAbsent(key, vector) == null) {
+                var record = ByteBuffer.allocate(HASH_LENGTH + Integer.BYTES + vector.length * Float.BYTES);
+                record.put(HexFormat.of().parseHex(key)).putInt(vector.length);
+                record.asFloatBuffer().put(vector);
+                records.writeBytes(record.array());
+            }
+        }
+        if (records.size() > 0) {
+            synchronized (fileChannel) {
+                var buffer = ByteBuffer.wrap(records.toByteArray());
+                fileChannel.position(fileChannel.size());
+                while (buffer.hasRemaining()) {
+                    fileChannel.write(buffer);
+                }
+            }
+        }
+    }
+
+    private String key(String segmentHash) {
+        return hash(modelIdentifier + "\n" + segmentHash);
+    }
+
+    private void load() throws IOException {
+        var buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+        var hash = new byte[HASH_LENGTH];
+        var validLength = 0;
+        while (buffer.remaining() >= HASH_LENGTH + Integer.BYTES) {
+            buffer.get(hash);
+            var dimension = buffer.getInt();
+            if (dimension <= 0 || buffer.remaining() < dimension * Float.BYTES) {
+                break;
+            }
+            var vector = new float[dimension];
+            buffer.asFloatBuffer().get(vector);
+            buffer.position(buffer.position() + dimension * Float.BYTES);
+            embeddings.put(HexFormat.of().formatHex(hash), vector);
+            validLength = buffer.position();
+        }
+        if (validLength < fileChannel.size()) {
+            // Incomplete record at the end, e.g. after a crash while writing
+            log.warn("Ignoring incomplete record at the end of the embedding cache");
+            fileChannel.truncate(validLength);
+        }
+        log.info("Loaded {} cached embeddings", embeddings.size());
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        fileChannel.close();
+    }
+}
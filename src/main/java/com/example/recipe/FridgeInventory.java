@@ -0,0 +1,131 @@
+package com.example.recipe;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.JedisPooled;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Ingredients available in the fridge of each user, ordered by priority.
+// Inventories are stored in Redis if available, and cached in memory, as they are read for every recipe request that prefers
+// available ingredients. Without Redis, inventories are only kept in memory, bounded like the cache, as user ids aren't authenticated.
+// Users without an inventory have the default ingredients.
+@Component
+class FridgeInventory {
+
+    static final String DEFAULT_USER = "default";
+    private static final Logger log = LoggerFactory.getLogger(FridgeInventory.class);
+    private static final String REDIS_KEY_PREFIX = "fridge:";
+    private static final TypeReference<List<String>> INGREDIENTS_TYPE = new TypeReference<>() {
+    };
+
+    private final Optional<JedisPooled> redisClient;
+    private final ObjectMapper objectMapper;
+    private final List<String> defaultIngredients;
+    private final Duration cacheTtl;
+    private final Map<String, List<String>> localInventories;
+    private final Map<String, CachedIngredients> cachedInventories;
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    FridgeInventory(Optional<JedisPooled> redisClient, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                    @Value("${app.fridge.default-ingredients}") List<String> defaultIngredients,
+                    @Value("${app.fridge.cache-ttl}") Duration cacheTtl,
+                    @Value("${app.fridge.cache-max-size}") int cacheMaxSize) {
+        this.redisClient = redisClient;
+        this.objectMapper = objectMapper;
+        this.defaultIngredients = List.copyOf(defaultIngredients);
+        this.cacheTtl = cacheTtl;
+        this.cacheHits = meterRegistry.counter("fridge.inventory.requests", "result", "hit");
+        this.cacheMisses = meterRegistry.counter("fridge.inventory.requests", "result", "miss");
+        this.localInventories = leastRecentlyUsed(cacheMaxSize);
+        this.cachedInventories = leastRecentlyUsed(cacheMaxSize);
+    }
+
+    // Access-ordered map to evict the inventories of the least recently active users
+    private static <V> Map<String, V> leastRecentlyUsed(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    List<String> ingredients(String userId) {
+        if (redisClient.isEmpty()) {
+            synchronized (localInventories) {
+                return localInventories.getOrDefault(userId, defaultIngredients);
+            }
+        }
+
+        // The TTL bounds how long changes made on other nodes are not visible
+        synchronized (cachedInventories) {
+            var cachedIngredients = cachedInventories.get(userId);
+            if (cachedIngredients != null && cachedIngredients.expiresAt().isAfter(Instant.now())) {
+                cacheHits.increment();
+                return cachedIngredients.ingredients();
+            }
+        }
+        cacheMisses.increment();
+        var ingredients = getFromRedis(redisClient.get(), userId).orElse(defaultIngredients);
+        putCached(userId, ingredients);
+        return ingredients;
+    }
+
+    void setIngredients(String userId, List<String> ingredients) {
+        var canonicalIngredients = ingredients.stream()
+                .map(String::strip)
+                .filter(ingredient -> !ingredient.isEmpty())
+                .distinct()
+                .toList();
+        if (redisClient.isEmpty()) {
+            synchronized (localInventories) {
+                localInventories.put(userId, canonicalIngredients);
+            }
+            return;
+        }
+        putToRedis(redisClient.get(), userId, canonicalIngredients);
+        putCached(userId, canonicalIngredients);
+    }
+
+    private void putCached(String userId, List<String> ingredients) {
+        synchronized (cachedInventories) {
+            cachedInventories.put(userId, new CachedIngredients(ingredients, Instant.now().plus(cacheTtl)));
+        }
+    }
+
+    // The default ingredients are used if Redis isn't reachable, so that recipe requests don't fail
+    private Optional<List<String>> getFromRedis(JedisPooled client, String userId) {
+        try {
+            var json = client.get(REDIS_KEY_PREFIX + userId);
+            return json == null ? Optional.empty() : Optional.of(objectMapper.readValue(json, INGREDIENTS_TYPE));
+        } catch (Exception e) {
+            log.warn("Reading fridge inventory of user '{}' from Redis failed: {}", userId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void putToRedis(JedisPooled client, String userId, List<String> ingredients) {
+        try {
+            client.set(REDIS_KEY_PREFIX + userId, objectMapper.writeValueAsString(ingredients));
+        } catch (Exception e) {
+            throw new IllegalStateException("Writing fridge inventory of user '%s' to Redis failed".formatted(userId), e);
+        }
+    }
+
+    private record CachedIngredients(List<String> ingredients, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.recipe;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+// Ingredients available at home, which are preferred by recipe requests with preferAvailableIngredients.
+// Users are identified by a header, requests without it use the inventory of the default user.
+@RestController
+@RequestMapping("/api/v1/fridge")
+class FridgeResource {
+
+    static final String USER_ID_HEADER = "X-User-Id";
+
+    private final FridgeInventory fridgeInventory;
+
+    FridgeResource(FridgeInventory fridgeInventory) {
+        this.fridgeInventory = fridgeInventory;
+    }
+
+    @GetMapping("ingredients")
+    List<String> fetchIngredients(@RequestHeader(name = USER_ID_HEADER, defaultValue = FridgeInventory.DEFAULT_USER) String userId) {
+        return fridgeInventory.ingredients(userId);
+    }
+
+    // Replaces the ingredients, ordered by priority
+    @PutMapping("ingredients")
+    ResponseEntity<Void> updateIngredients(@RequestHeader(name = USER_ID_HEADER, defaultValue = FridgeInventory.DEFAULT_USER) String userId,
+                                           @RequestBody List<String> ingredients) {
+        fridgeInventory.setIngredients(userId, ingredients);
+        return ResponseEntity.noContent().build();
+    }
+}
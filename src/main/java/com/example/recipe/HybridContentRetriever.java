@@ -0,0 +1,109 @@
+package com.example.recipe;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// ContentRetriever for RAG, which combines the ranking of the vector search with the ranking of exact ingredient matches
+// of the IngredientIndex by reciprocal rank fusion.
+// The max results and min score of the vector search are the same as for the autoconfigured ContentRetriever. Segments that are
+// no vector match above the min score are only retrieved if they contain all requested ingredients.
+// The AiServices with RAG create the retriever at startup, but the store and the index are only created with the first retrieval.
+@Component
+class HybridContentRetriever implements ContentRetriever {
+
+    // Damping constant of reciprocal rank fusion, so that the top ranks of one ranking don't dominate
+    private static final int RANK_CONSTANT = 60;
+    private static final int CANDIDATES_PER_RESULT = 4;
+
+    private final EmbeddingModel embeddingModel;
+    private final ModelBulkhead embeddingModelBulkhead;
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final IngredientIndex ingredientIndex;
+    private final int maxResults;
+    private final double minScore;
+    private final ObservationRegistry observationRegistry;
+    private final Timer vectorSearchTimer;
+    private final DistributionSummary vectorMatchCount;
+    private final DistributionSummary lexicalMatchCount;
+    private final DistributionSummary retrievedContentCount;
+    private final DistributionSummary vectorMatchScores;
+
+    HybridContentRetriever(EmbeddingModel embeddingModel, ModelBulkhead embeddingModelBulkhead,
+                           @Lazy EmbeddingStore<TextSegment> embeddingStore, @Lazy IngredientIndex ingredientIndex,
+                           @Value("${langchain4j.rag.retrieval.max-results}") int maxResults,
+                           @Value("${langchain4j.rag.retrieval.min-score}") double minScore,
+                           ObservationRegistry observationRegistry, MeterRegistry meterRegistry) {
+        this.embeddingModel = embeddingModel;
+        this.embeddingModelBulkhead = embeddingModelBulkhead;
+        this.embeddingStore = embeddingStore;
+        this.ingredientIndex = ingredientIndex;
+        this.maxResults = maxResults;
+        this.minScore = minScore;
+        this.observationRegistry = observationRegistry;
+        this.vectorSearchTimer = meterRegistry.timer("rag.vector-search");
+        this.vectorMatchCount = meterRegistry.summary("rag.retrieval.matches", "source", "vector");
+        this.lexicalMatchCount = meterRegistry.summary("rag.retrieval.matches", "source", "lexical");
+        this.retrievedContentCount = meterRegistry.summary("rag.retrieval.matches", "source", "retrieved");
+        this.vectorMatchScores = DistributionSummary.builder("rag.retrieval.scores")
+                .serviceLevelObjectives(0.7, 0.8, 0.9, 0.95)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        return Observation.createNotStarted("rag.retrieval", observationRegistry).observe(() -> retrieveObserved(query));
+    }
+
+    private List<Content> retrieveObserved(Query query) {
+        var queryEmbedding = embeddingModelBulkhead.call(() -> embeddingModel.embed(query.text())).content();
+        var vectorMatches = vectorSearchTimer.record(() -> embeddingStore.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(queryEmbedding)
+                .maxResults(maxResults * CANDIDATES_PER_RESULT)
+                .minScore(minScore)
+                .build()).matches());
+        var lexicalMatches = ingredientIndex.search(query.text(), maxResults * CANDIDATES_PER_RESULT);
+        vectorMatchCount.record(vectorMatches.size());
+        lexicalMatchCount.record(lexicalMatches.size());
+        vectorMatches.forEach(match -> vectorMatchScores.record(match.score()));
+
+        var scores = new HashMap<String, Double>();
+        var segments = new HashMap<String, TextSegment>();
+        for (int rank = 0; rank < vectorMatches.size(); rank++) {
+            var match = vectorMatches.get(rank);
+            scores.merge(match.embeddingId(), 1.0 / (RANK_CONSTANT + rank + 1), Double::sum);
+            segments.put(match.embeddingId(), match.embedded());
+        }
+        for (int rank = 0; rank < lexicalMatches.size(); rank++) {
+            var match = lexicalMatches.get(rank);
+            if (segments.containsKey(match.segmentId()) || match.coversAllIngredients()) {
+                scores.merge(match.segmentId(), 1.0 / (RANK_CONSTANT + rank + 1), Double::sum);
+                segments.putIfAbsent(match.segmentId(), match.segment());
+            }
+        }
+
+        var contents = scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(maxResults)
+                .map(entry -> Content.from(segments.get(entry.getKey())))
+                .toList();
+        retrievedContentCount.record(contents.size());
+        return contents;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.recipe;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+// Registry of pending recipe generations, so that concurrent identical requests share one LLM and image computation
+@Component
+class InFlightRecipeRequests {
+
+    private final ConcurrentMap<RecipeCacheKey, CompletableFuture<Recipe>> pendingRequests = new ConcurrentHashMap<>();
+    private final Counter coalescedRequests;
+
+    InFlightRecipeRequests(MeterRegistry meterRegistry) {
+        this.coalescedRequests = meterRegistry.counter("recipe.requests.coalesced");
+        meterRegistry.gaugeMapSize("recipe.requests.in-flight", Tags.empty(), pendingRequests);
+    }
+
+    Recipe computeIfAbsent(RecipeCacheKey key, RecipeLoader loader) throws IOException {
+        var newRequest = new CompletableFuture<Recipe>();
+        var pendingRequest = pendingRequests.putIfAbsent(key, newRequest);
+        if (pendingRequest != null) {
+            coalescedRequests.increment();
+            return await(pendingRequest);
+        }
+
+        try {
+            newRequest.complete(loader.load());
+        } catch (Throwable e) {
+            newRequest.completeExceptionally(e);
+        } finally {
+            // Failures are not memoized, so that a subsequent request (e.g. a retry) triggers a new computation
+            pendingRequests.remove(key, newRequest);
+        }
+        return await(newRequest);
+    }
+
+    // Registers a recipe computed asynchronously, e.g. by a token stream, unless another computation is already pending for the key.
+    // Returns the pending computation in that case, which the caller joins instead of starting its own.
+    Optional<CompletableFuture<Recipe>> registerIfAbsent(RecipeCacheKey key, CompletableFuture<Recipe> request) {
+        var pendingRequest = pendingRequests.putIfAbsent(key, request);
+        if (pendingRequest != null) {
+            coalescedRequests.increment();
+            return Optional.of(pendingRequest);
+        }
+        request.whenComplete((recipe, error) -> pendingRequests.remove(key, request));
+        return Optional.empty();
+    }
+
+    private static Recipe await(CompletableFuture<Recipe> request) throws IOException {
+        try {
+            return request.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for pending recipe request", e);
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case IOException ioException -> throw ioException;
+                case RuntimeException runtimeException -> throw runtimeException;
+                case Error error -> throw error;
+                default -> throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface RecipeLoader {
+        Recipe load() throws IOException;
+    }
+}
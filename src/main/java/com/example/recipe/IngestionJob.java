@@ -0,0 +1,105 @@
+package com.example.recipe;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Tracks the progress of an asynchronous ingestion of recipe documents for RAG
+class IngestionJob {
+
+    enum State { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    private final String id = UUID.randomUUID().toString();
+    private final List<String> fileNames;
+    private final AtomicInteger pages = new AtomicInteger();
+    private final AtomicInteger parsedPages = new AtomicInteger();
+    private final AtomicInteger segments = new AtomicInteger();
+    private final AtomicInteger storedSegments = new AtomicInteger();
+    private final AtomicInteger skippedSegments = new AtomicInteger();
+    private final AtomicInteger cachedEmbeddings = new AtomicInteger();
+    private final AtomicInteger recipes = new AtomicInteger();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private volatile State state = State.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    IngestionJob(List<String> fileNames) {
+        this.fileNames = fileNames;
+    }
+
+    String id() {
+        return id;
+    }
+
+    List<String> fileNames() {
+        return fileNames;
+    }
+
+    CompletableFuture<Void> completion() {
+        return completion;
+    }
+
+    void started() {
+        startedAt = Instant.now();
+        state = State.RUNNING;
+    }
+
+    void addPages(int count) {
+        pages.addAndGet(count);
+    }
+
+    void pagesParsed(int count) {
+        parsedPages.addAndGet(count);
+    }
+
+    void segmentsCreated(int count) {
+        segments.addAndGet(count);
+    }
+
+    void segmentsStored(int count) {
+        storedSegments.addAndGet(count);
+    }
+
+    void segmentsSkipped(int count) {
+        skippedSegments.addAndGet(count);
+    }
+
+    void embeddingsCached(int count) {
+        cachedEmbeddings.addAndGet(count);
+    }
+
+    void recipesIndexed(int count) {
+        recipes.addAndGet(count);
+    }
+
+    void completed() {
+        finishedAt = Instant.now();
+        state = State.COMPLETED;
+        completion.complete(null);
+    }
+
+    void failed(Throwable cause) {
+        finishedAt = Instant.now();
+        error = cause.getMessage();
+        state = State.FAILED;
+        completion.completeExceptionally(cause);
+    }
+
+    Status status() {
+        var segmentsPerSecond = 0.0;
+        if (startedAt != null) {
+            var elapsed = Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now());
+            segmentsPerSecond = (storedSegments.get() + skippedSegments.get()) / Math.max(elapsed.toMillis() / 1000.0, 0.001);
+        }
+        return new Status(id, state, fileNames, pages.get(), parsedPages.get(), segments.get(), storedSegments.get(),
+                skippedSegments.get(), cachedEmbeddings.get(), recipes.get(), segmentsPerSecond, startedAt, finishedAt, error);
+    }
+
+    record Status(String id, State state, List<String> files, int pages, int parsedPages, int segments, int storedSegments,
+                  int skippedSegments, int cachedEmbeddings, int recipes, double segmentsPerSecond, Instant startedAt, Instant finishedAt, String error) {
+    }
+}
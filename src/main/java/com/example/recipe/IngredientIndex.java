@@ -0,0 +1,252 @@
+package com.example.recipe;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Inverted index from normalized ingredient terms to the ingested segments and to the recipes parsed from the ingested documents.
+// It complements the vector search with exact ingredient matches, and answers requests for ingredients covered by an uploaded
+// recipe without any model call. Entries are appended to a file of JSON lines, which is replayed when the index is first used,
+// so that nodes only serving requests without RAG don't load it at startup.
+@Lazy
+@Component
+class IngredientIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(IngredientIndex.class);
+    private static final Pattern WORD = Pattern.compile("\\p{L}+");
+    // Units, preparation and filler words, which don't identify an ingredient
+    private static final Set<String> STOP_WORDS = Set.of("a", "an", "and", "or", "of", "the", "to", "for", "with", "in", "into",
+            "on", "cup", "tablespoon", "tbsp", "teaspoon", "tsp", "gram", "kg", "ml", "oz", "ounce", "pound", "lb", "pinch", "piece",
+            "slice", "large", "small", "medium", "fresh", "chopped", "diced", "sliced", "minced", "finely", "roughly", "optional");
+
+    private final ObjectMapper objectMapper;
+    private final Path file;
+    private final Map<String, IndexedSegment> segmentsById = new HashMap<>();
+    private final Map<String, Set<String>> termsBySegmentId = new HashMap<>();
+    private final Map<String, Set<String>> segmentIdsByTerm = new HashMap<>();
+    private final Map<String, Recipe> recipesByName = new HashMap<>();
+    // Terms of each ingredient of a recipe, e.g. [[chicken, breast], [salt]]
+    private final Map<String, List<Set<String>>> ingredientTermsByRecipeName = new HashMap<>();
+    private final Map<String, Set<String>> recipeNamesByTerm = new HashMap<>();
+
+    private final Counter ownRecipeHits;
+    private final Counter ownRecipeMisses;
+
+    IngredientIndex(ObjectMapper objectMapper, @Value("${app.ingestion.ingredient-index-file}") Path file,
+                    MeterRegistry meterRegistry) throws IOException {
+        this.objectMapper = objectMapper;
+        this.file = file;
+        this.ownRecipeHits = meterRegistry.counter("recipe.own-recipes.requests", "result", "hit");
+        this.ownRecipeMisses = meterRegistry.counter("recipe.own-recipes.requests", "result", "miss");
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        load();
+    }
+
+    // Lowercase words without units and filler words, with a naive singular form so that e.g. "tomatoes" matches "tomato"
+    static Set<String> terms(String text) {
+        var terms = new LinkedHashSet<String>();
+        var matcher = WORD.matcher(text.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            var term = singular(matcher.group());
+            if (term.length() > 1 && !STOP_WORDS.contains(term)) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private static String singular(String word) {
+        if (word.length() > 4 && word.endsWith("ies")) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.length() > 4 && word.endsWith("oes")) {
+            return word.substring(0, word.length() - 2);
+        }
+        if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+
+    synchronized void addSegments(List<String> ids, List<TextSegment> segments) throws IOException {
+        var entries = new ArrayList<Entry>();
+        for (int i = 0; i < ids.size(); i++) {
+            var segment = new IndexedSegment(ids.get(i), segments.get(i).text(), segments.get(i).metadata().toMap());
+            if (!segmentsById.containsKey(segment.id())) {
+                index(segment);
+                entries.add(new Entry(segment, null));
+            }
+        }
+        append(entries);
+    }
+
+    synchronized void addRecipes(List<Recipe> recipes) throws IOException {
+        var entries = new ArrayList<Entry>();
+        for (var recipe : recipes) {
+            if (!recipe.equals(recipesByName.get(RecipeImageStore.normalizeRecipeName(recipe.name())))) {
+                index(recipe);
+                entries.add(new Entry(null, recipe));
+            }
+        }
+        append(entries);
+    }
+
+    // Finds the uploaded recipe with all requested ingredients and the fewest other ingredients. A requested ingredient is only
+    // covered by a single ingredient of the recipe with all of its terms, so that e.g. "chicken breast" isn't covered by
+    // "turkey breast" and "chicken stock".
+    synchronized Optional<Recipe> findRecipeCovering(List<String> ingredients) {
+        var requestedIngredients = ingredients.stream().map(IngredientIndex::terms).filter(terms -> !terms.isEmpty()).toList();
+        // Recipes with all requested terms are the candidates, whose ingredients are compared with the requested ones
+        Set<String> candidates = null;
+        for (var terms : requestedIngredients) {
+            for (var term : terms) {
+                var recipeNames = recipeNamesByTerm.getOrDefault(term, Set.of());
+                if (candidates == null) {
+                    candidates = new HashSet<>(recipeNames);
+                } else {
+                    candidates.retainAll(recipeNames);
+                }
+            }
+        }
+        var recipe = candidates == null ? Optional.<Recipe>empty() : candidates.stream()
+                .filter(name -> covers(ingredientTermsByRecipeName.get(name), requestedIngredients))
+                .min(Comparator.comparingInt((String name) -> ingredientTermsByRecipeName.get(name).size()).thenComparing(Comparator.naturalOrder()))
+                .map(recipesByName::get);
+        (recipe.isPresent() ? ownRecipeHits : ownRecipeMisses).increment();
+        return recipe;
+    }
+
+    private static boolean covers(List<Set<String>> ingredientTerms, List<Set<String>> requestedIngredients) {
+        return requestedIngredients.stream()
+                .allMatch(requestedTerms -> ingredientTerms.stream().anyMatch(terms -> terms.containsAll(requestedTerms)));
+    }
+
+    // Ranks the segments by their coverage of the ingredients in the query, weighted by the inverse document frequency so
+    // that rare ingredients count more than common ones. Only terms that are ingredients of an uploaded recipe are considered,
+    // so that e.g. the words of the prompt template don't match.
+    synchronized List<LexicalMatch> search(String query, int maxResults) {
+        var queryTerms = terms(query).stream().filter(recipeNamesByTerm::containsKey).toList();
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+
+        var weights = new HashMap<String, Double>();
+        var totalWeight = 0.0;
+        for (var term : queryTerms) {
+            var weight = Math.log(1 + (double) segmentsById.size() / Math.max(1, segmentIdsByTerm.getOrDefault(term, Set.of()).size()));
+            weights.put(term, weight);
+            totalWeight += weight;
+        }
+        var candidateIds = new HashSet<String>();
+        queryTerms.forEach(term -> candidateIds.addAll(segmentIdsByTerm.getOrDefault(term, Set.of())));
+
+        var matches = new ArrayList<LexicalMatch>(candidateIds.size());
+        for (var id : candidateIds) {
+            var segmentTerms = termsBySegmentId.get(id);
+            var matchedWeight = 0.0;
+            var matchedTerms = 0;
+            for (var term : queryTerms) {
+                if (segmentTerms.contains(term)) {
+                    matchedWeight += weights.get(term);
+                    matchedTerms++;
+                }
+            }
+            matches.add(new LexicalMatch(id, segmentsById.get(id).toTextSegment(), matchedWeight / totalWeight, matchedTerms == queryTerms.size()));
+        }
+        return matches.stream()
+                .sorted(Comparator.comparingDouble(LexicalMatch::coverage).reversed().thenComparing(LexicalMatch::segmentId))
+                .limit(maxResults)
+                .toList();
+    }
+
+    private void index(IndexedSegment segment) {
+        var terms = terms(segment.text());
+        segmentsById.put(segment.id(), segment);
+        termsBySegmentId.put(segment.id(), terms);
+        terms.forEach(term -> segmentIdsByTerm.computeIfAbsent(term, key -> new HashSet<>()).add(segment.id()));
+    }
+
+    private void index(Recipe recipe) {
+        var name = RecipeImageStore.normalizeRecipeName(recipe.name());
+        var previousIngredientTerms = ingredientTermsByRecipeName.remove(name);
+        if (previousIngredientTerms != null) {
+            previousIngredientTerms.forEach(terms -> terms.forEach(term -> recipeNamesByTerm.get(term).remove(name)));
+        }
+        var ingredientTerms = recipe.ingredients().stream().map(IngredientIndex::terms).filter(terms -> !terms.isEmpty()).toList();
+        recipesByName.put(name, recipe);
+        ingredientTermsByRecipeName.put(name, ingredientTerms);
+        ingredientTerms.forEach(terms -> terms.forEach(term -> recipeNamesByTerm.computeIfAbsent(term, key -> new HashSet<>()).add(name)));
+    }
+
+    private void append(List<Entry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        var lines = new StringBuilder();
+        for (var entry : entries) {
+            lines.append(objectMapper.writeValueAsString(entry)).append('\n');
+        }
+        Files.writeString(file, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (var lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            lines.filter(line -> !line.isBlank()).forEach(line -> {
+                try {
+                    var entry = objectMapper.readValue(line, Entry.class);
+                    if (entry.segment() != null) {
+                        index(entry.segment());
+                    }
+                    if (entry.recipe() != null) {
+                        index(entry.recipe());
+                    }
+                } catch (JsonProcessingException e) {
+                    // E.g. an incomplete line after a crash while writing
+                    log.warn("Ignoring invalid entry of the ingredient index: {}", e.getOriginalMessage());
+                }
+            });
+        }
+        log.info("Loaded ingredient index with {} segments and {} recipes", segmentsById.size(), recipesByName.size());
+    }
+
+    record LexicalMatch(String segmentId, TextSegment segment, double coverage, boolean coversAllIngredients) {
+    }
+
+    record IndexedSegment(String id, String text, Map<String, Object> metadata) {
+
+        TextSegment toTextSegment() {
+            return TextSegment.from(text, Metadata.from(metadata));
+        }
+    }
+
+    record Entry(IndexedSegment segment, Recipe recipe) {
+    }
+}
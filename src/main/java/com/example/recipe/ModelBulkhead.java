@@ -0,0 +1,110 @@
+package com.example.recipe;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Limits the concurrent calls of a model type to a provider to protect its backend from overload.
+// Calls beyond the limit wait in a bounded queue, which is cheap with virtual threads. Calls are rejected immediately if the
+// queue is full, and after the timeout if no call finished in the meantime.
+class ModelBulkhead {
+
+    private final String modelType;
+    private final String provider;
+    private final Semaphore permits;
+    private final int maxQueuedCalls;
+    private final Duration timeout;
+    private final AtomicInteger queuedCalls = new AtomicInteger();
+
+    private final ObservationRegistry observationRegistry;
+    private final Timer waitTimer;
+    private final Counter queueFullRejections;
+    private final Counter timeoutRejections;
+
+    ModelBulkhead(String modelType, String provider, int maxConcurrentCalls, int maxQueuedCalls, Duration timeout,
+                  MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
+        this.modelType = modelType;
+        this.provider = provider;
+        this.observationRegistry = observationRegistry;
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+        this.maxQueuedCalls = maxQueuedCalls;
+        this.timeout = timeout;
+        var tags = Tags.of("model", modelType, "provider", provider);
+        this.waitTimer = meterRegistry.timer("model.bulkhead.wait", tags);
+        this.queueFullRejections = meterRegistry.counter("model.bulkhead.rejections", tags.and("reason", "queue-full"));
+        this.timeoutRejections = meterRegistry.counter("model.bulkhead.rejections", tags.and("reason", "timeout"));
+        meterRegistry.gauge("model.bulkhead.queued", tags,
+                queuedCalls, AtomicInteger::get);
+        meterRegistry.gauge("model.bulkhead.active", tags,
+                permits, semaphore -> maxConcurrentCalls - semaphore.availablePermits());
+    }
+
+    // Model calls are observed after the wait for a permit, as a timer and as a span of the recipe request
+    <T> T call(Supplier<T> modelCall) {
+        acquire();
+        try {
+            return Observation.createNotStarted("model.calls", observationRegistry)
+                    .lowCardinalityKeyValue("model", modelType)
+                    .lowCardinalityKeyValue("provider", provider)
+                    .observe(modelCall);
+        } finally {
+            release();
+        }
+    }
+
+    void acquire() {
+        if (permits.tryAcquire()) {
+            waitTimer.record(Duration.ZERO);
+            return;
+        }
+        if (queuedCalls.incrementAndGet() > maxQueuedCalls) {
+            queuedCalls.decrementAndGet();
+            queueFullRejections.increment();
+            throw new ModelBusyException(HttpStatus.TOO_MANY_REQUESTS, "Too many queued %s model calls".formatted(modelType));
+        }
+        var startTime = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                timeoutRejections.increment();
+                throw new ModelBusyException(HttpStatus.SERVICE_UNAVAILABLE, "Timeout waiting for a %s model call".formatted(modelType));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModelBusyException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted waiting for a %s model call".formatted(modelType));
+        } finally {
+            queuedCalls.decrementAndGet();
+            waitTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    // Clients are asked to retry later, as the model backend is busy
+    static class ModelBusyException extends ResponseStatusException {
+
+        ModelBusyException(HttpStatus status, String reason) {
+            super(status, reason);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            var headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, "5");
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.recipe;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The bulkheads of a model type, one per provider, as each provider has its own backend with its own capacity.
+// The limits apply to each provider, so that e.g. hedged calls to another provider don't count against the limit of the first.
+class ModelBulkheads {
+
+    private final String modelType;
+    private final int maxConcurrentCalls;
+    private final int maxQueuedCalls;
+    private final Duration timeout;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final Map<String, ModelBulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    ModelBulkheads(String modelType, int maxConcurrentCalls, int maxQueuedCalls, Duration timeout, MeterRegistry meterRegistry,
+                   ObservationRegistry observationRegistry) {
+        this.modelType = modelType;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxQueuedCalls = maxQueuedCalls;
+        this.timeout = timeout;
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+    }
+
+    ModelBulkhead forProvider(String provider) {
+        return bulkheads.computeIfAbsent(provider, key -> new ModelBulkhead(modelType, key, maxConcurrentCalls, maxQueuedCalls,
+                timeout, meterRegistry, observationRegistry));
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.recipe;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+// Recent latencies and circuit breaker of a model provider.
+// The circuit opens if the share of failed or slow calls in the window of recent calls reaches the threshold.
+// After the open duration, one probe call is allowed, which closes the circuit on success and opens it again on failure.
+class ModelProviderHealth {
+
+    // Below this number of latencies, the percentile isn't meaningful and the initial hedge delay is used
+    private static final int MIN_LATENCY_SAMPLES = 10;
+    private static final int MIN_CALLS = 5;
+
+    enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final long[] latencies;
+    private int latencyCount;
+    private int latencyIndex;
+    private final boolean[] failures;
+    private int outcomeCount;
+    private int outcomeIndex;
+    private int failureCount;
+
+    private final double failureRateThreshold;
+    private final Duration slowCallThreshold;
+    private final Duration openDuration;
+    private State state = State.CLOSED;
+    private long openedAt;
+
+    ModelProviderHealth(int windowSize, double failureRateThreshold, Duration slowCallThreshold, Duration openDuration) {
+        this.latencies = new long[windowSize * 5];
+        this.failures = new boolean[windowSize];
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThreshold = slowCallThreshold;
+        this.openDuration = openDuration;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    // Whether a call may be sent to the provider. After the open duration, only the first caller gets the probe call,
+    // which has to be followed by record or recordCancelled.
+    synchronized boolean tryAcquireCall() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> {
+                if (System.nanoTime() - openedAt < openDuration.toNanos()) {
+                    yield false;
+                }
+                state = State.HALF_OPEN;
+                yield true;
+            }
+            case HALF_OPEN -> false;
+        };
+    }
+
+    synchronized void record(boolean success, Duration latency) {
+        latencies[latencyIndex] = latency.toNanos();
+        latencyIndex = (latencyIndex + 1) % latencies.length;
+        latencyCount = Math.min(latencyCount + 1, latencies.length);
+
+        var failure = !success || latency.compareTo(slowCallThreshold) > 0;
+        if (state == State.HALF_OPEN) {
+            if (failure) {
+                open();
+            } else {
+                state = State.CLOSED;
+                Arrays.fill(failures, false);
+                outcomeCount = 0;
+                failureCount = 0;
+            }
+            return;
+        }
+
+        if (outcomeCount == failures.length && failures[outcomeIndex]) {
+            failureCount--;
+        }
+        failures[outcomeIndex] = failure;
+        outcomeIndex = (outcomeIndex + 1) % failures.length;
+        outcomeCount = Math.min(outcomeCount + 1, failures.length);
+        if (failure) {
+            failureCount++;
+        }
+        if (state == State.CLOSED && outcomeCount >= MIN_CALLS && (double) failureCount / outcomeCount >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    // A cancelled probe call, e.g. of a hedged request answered by another provider, allows the next call to probe again
+    synchronized void recordCancelled() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    synchronized Duration latencyPercentile(double percentile, Duration defaultLatency) {
+        if (latencyCount < MIN_LATENCY_SAMPLES) {
+            return defaultLatency;
+        }
+        var sortedLatencies = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sortedLatencies);
+        var index = Math.max(0, (int) Math.ceil(percentile * latencyCount) - 1);
+        return Duration.ofNanos(sortedLatencies[index]);
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+}
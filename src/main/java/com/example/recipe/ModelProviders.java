@@ -0,0 +1,66 @@
+package com.example.recipe;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The auto-configured models of all active provider profiles, ordered by preference, with the health of each provider.
+// Providers are identified by the bean name prefix of their auto-configured models, e.g. "ollama" for "ollamaChatModel".
+@Component
+class ModelProviders {
+
+    private final List<String> preferredProviders;
+    private final int windowSize;
+    private final double failureRateThreshold;
+    private final Duration slowCallThreshold;
+    private final Duration openDuration;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ModelProviderHealth> health = new ConcurrentHashMap<>();
+
+    ModelProviders(MeterRegistry meterRegistry,
+                   @Value("${app.routing.providers}") List<String> preferredProviders,
+                   @Value("${app.routing.circuit-breaker.window-size}") int windowSize,
+                   @Value("${app.routing.circuit-breaker.failure-rate-threshold}") double failureRateThreshold,
+                   @Value("${app.routing.circuit-breaker.slow-call-threshold}") Duration slowCallThreshold,
+                   @Value("${app.routing.circuit-breaker.open-duration}") Duration openDuration) {
+        this.meterRegistry = meterRegistry;
+        this.preferredProviders = preferredProviders;
+        this.windowSize = windowSize;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThreshold = slowCallThreshold;
+        this.openDuration = openDuration;
+    }
+
+    // Chat and streaming chat models of a provider share their health, as they are served by the same backend
+    <M> List<ModelRouter.Route<M>> routes(String modelType, Map<String, M> modelsByBeanName, String beanNameSuffix) {
+        return modelsByBeanName.entrySet().stream()
+                .map(entry -> {
+                    var provider = entry.getKey().replace(beanNameSuffix, "");
+                    return new ModelRouter.Route<>(provider, entry.getValue(), health(modelType, provider));
+                })
+                .sorted(Comparator.comparingInt(route -> preference(route.provider())))
+                .toList();
+    }
+
+    private ModelProviderHealth health(String modelType, String provider) {
+        return health.computeIfAbsent(modelType + ":" + provider, key -> {
+            var providerHealth = new ModelProviderHealth(windowSize, failureRateThreshold, slowCallThreshold, openDuration);
+            meterRegistry.gauge("model.routing.circuit.open", Tags.of("model", modelType, "provider", provider),
+                    providerHealth, h -> h.state() == ModelProviderHealth.State.CLOSED ? 0 : 1);
+            return providerHealth;
+        });
+    }
+
+    // Providers that aren't configured as preferred are used last
+    private int preference(String provider) {
+        var index = preferredProviders.indexOf(provider);
+        return index < 0 ? preferredProviders.size() : index;
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.recipe;
+
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Routes the calls of a model type to the configured providers in order of preference, skipping providers with an open circuit.
+// If hedging is enabled and a provider hasn't answered within the configured percentile of its recent latencies, a hedged call
+// is sent to the next provider, and the first valid result is used. This bounds the tail latency, while only slow calls are doubled.
+// Failed calls and invalid results fall back to the next provider immediately. Only failed calls count against the health of
+// a provider, as an invalid result, e.g. an image response without image, says nothing about its availability.
+class ModelRouter<M> {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelRouter.class);
+
+    private final String modelType;
+    private final List<Route<M>> routes;
+    private final boolean hedging;
+    private final double latencyPercentile;
+    private final Duration initialHedgeDelay;
+    private final Duration minHedgeDelay;
+    private final MeterRegistry meterRegistry;
+    private final Counter hedgedCalls;
+    private final Counter fallbackCalls;
+    private final ContextSnapshotFactory contextSnapshotFactory = ContextSnapshotFactory.builder().build();
+    // Calls mostly wait for the provider, so a virtual thread per call is sufficient
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("model-routing-", 0).factory());
+
+    ModelRouter(String modelType, List<Route<M>> routes, boolean hedging, double latencyPercentile, Duration initialHedgeDelay,
+                Duration minHedgeDelay, MeterRegistry meterRegistry) {
+        if (routes.isEmpty()) {
+            throw new IllegalArgumentException("No %s model provider configured".formatted(modelType));
+        }
+        this.modelType = modelType;
+        this.routes = List.copyOf(routes);
+        this.hedging = hedging;
+        this.latencyPercentile = latencyPercentile;
+        this.initialHedgeDelay = initialHedgeDelay;
+        this.minHedgeDelay = minHedgeDelay;
+        this.meterRegistry = meterRegistry;
+        this.hedgedCalls = meterRegistry.counter("model.routing.hedged-calls", "model", modelType);
+        this.fallbackCalls = meterRegistry.counter("model.routing.fallback-calls", "model", modelType);
+    }
+
+    List<Route<M>> routes() {
+        return routes;
+    }
+
+    // Available providers in order of preference. If no provider is available, all are tried, as rejecting the call isn't better.
+    // Candidates that aren't called have to be released.
+    List<Route<M>> candidates() {
+        var candidates = routes.stream().filter(route -> route.health().tryAcquireCall()).toList();
+        return candidates.isEmpty() ? routes : candidates;
+    }
+
+    // Candidates not needed for hedging or fallback give up their probe call, if any, so that the next call probes them
+    void release(List<Route<M>> unusedCandidates) {
+        unusedCandidates.forEach(route -> route.health().recordCancelled());
+    }
+
+    <T> T call(Function<M, T> modelCall, Predicate<T> isValid) {
+        var candidates = candidates();
+        var completionService = new ExecutorCompletionService<Attempt<T>>(executor);
+        var futures = new ArrayList<Future<Attempt<T>>>();
+        var cancelled = new AtomicBoolean();
+        // The calls run on other threads, which continue the trace of the request, e.g. for log correlation
+        var context = contextSnapshotFactory.captureAll();
+        Attempt<T> invalidAttempt = null;
+        RuntimeException failure = null;
+        try {
+            futures.add(completionService.submit(() -> attempt(candidates.getFirst(), modelCall, isValid, cancelled, context)));
+            var running = 1;
+            while (running > 0) {
+                var nextRoute = futures.size() < candidates.size() ? candidates.get(futures.size()) : null;
+                Future<Attempt<T>> completedAttempt;
+                if (hedging && nextRoute != null) {
+                    var hedgeDelay = hedgeDelay(candidates.get(futures.size() - 1));
+                    completedAttempt = completionService.poll(hedgeDelay.toNanos(), TimeUnit.NANOSECONDS);
+                    if (completedAttempt == null) {
+                        log.debug("No {} model response within {} ms, sending hedged call to {}", modelType, hedgeDelay.toMillis(), nextRoute.provider());
+                        hedgedCalls.increment();
+                        futures.add(completionService.submit(() -> attempt(nextRoute, modelCall, isValid, cancelled, context)));
+                        running++;
+                        continue;
+                    }
+                } else {
+                    completedAttempt = completionService.take();
+                }
+                running--;
+
+                try {
+                    var attempt = completedAttempt.get();
+                    if (attempt.valid()) {
+                        return attempt.result();
+                    }
+                    invalidAttempt = attempt;
+                } catch (ExecutionException e) {
+                    failure = e.getCause() instanceof RuntimeException runtimeException ? runtimeException : new IllegalStateException(e.getCause());
+                }
+                if (running == 0 && nextRoute != null) {
+                    log.info("{} model call failed, falling back to {}", capitalizedModelType(), nextRoute.provider());
+                    fallbackCalls.increment();
+                    futures.add(completionService.submit(() -> attempt(nextRoute, modelCall, isValid, cancelled, context)));
+                    running++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the %s model".formatted(modelType), e);
+        } finally {
+            // Pending calls of other providers are obsolete
+            cancelled.set(true);
+            futures.forEach(future -> future.cancel(true));
+            release(candidates.subList(futures.size(), candidates.size()));
+        }
+
+        // An invalid result is better than none, e.g. the JSON of a recipe may still be fixable
+        if (invalidAttempt != null) {
+            return invalidAttempt.result();
+        }
+        throw failure;
+    }
+
+    void record(Route<M> route, boolean success, long startTime) {
+        var latency = Duration.ofNanos(System.nanoTime() - startTime);
+        route.health().record(success, latency);
+        meterRegistry.timer("model.routing.calls", "model", modelType, "provider", route.provider(),
+                "outcome", success ? "success" : "failure").record(latency);
+    }
+
+    // A call rejected by the bulkhead of the provider or cancelled before it was sent never reached the provider,
+    // so it says nothing about the health of the provider
+    void recordFailure(Route<M> route, Throwable error, long startTime) {
+        if (error instanceof ModelBulkhead.ModelBusyException || error instanceof CancellationException) {
+            route.health().recordCancelled();
+        } else {
+            record(route, false, startTime);
+        }
+    }
+
+    private <T> Attempt<T> attempt(Route<M> route, Function<M, T> modelCall, Predicate<T> isValid, AtomicBoolean cancelled,
+                                   ContextSnapshot context) {
+        try (var scope = context.setThreadLocals()) {
+            return attempt(route, modelCall, isValid, cancelled);
+        }
+    }
+
+    private <T> Attempt<T> attempt(Route<M> route, Function<M, T> modelCall, Predicate<T> isValid, AtomicBoolean cancelled) {
+        var startTime = System.nanoTime();
+        try {
+            var result = modelCall.apply(route.model());
+            record(route, true, startTime);
+            var valid = isValid.test(result);
+            if (!valid) {
+                meterRegistry.counter("model.routing.invalid-results", "model", modelType, "provider", route.provider()).increment();
+            }
+            return new Attempt<>(result, valid);
+        } catch (RuntimeException e) {
+            if (cancelled.get()) {
+                route.health().recordCancelled();
+            } else {
+                log.warn("{} model call to {} failed: {}", capitalizedModelType(), route.provider(), e.getMessage());
+                recordFailure(route, e, startTime);
+            }
+            throw e;
+        }
+    }
+
+    private Duration hedgeDelay(Route<M> route) {
+        var latency = route.health().latencyPercentile(latencyPercentile, initialHedgeDelay);
+        return latency.compareTo(minHedgeDelay) < 0 ? minHedgeDelay : latency;
+    }
+
+    private String capitalizedModelType() {
+        return Character.toUpperCase(modelType.charAt(0)) + modelType.substring(1);
+    }
+
+    record Route<M>(String provider, M model, ModelProviderHealth health) {
+    }
+
+    private record Attempt<T>(T result, boolean valid) {
+    }
+}
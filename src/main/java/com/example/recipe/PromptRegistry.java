@@ -0,0 +1,119 @@
+package com.example.recipe;
+
+import dev.langchain4j.model.input.PromptTemplate;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Prompts of src/main/resources/prompts, loaded and compiled to PromptTemplates once instead of on every request.
+// Prompts in the optional watch directory override those of the classpath with the same file name, and are reloaded
+// when they change, e.g. to tune prompts without a restart.
+// The prompts of the annotated AiServices are loaded by LangChain4j from the classpath and therefore not reloaded.
+@Component
+class PromptRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(PromptRegistry.class);
+
+    private final Map<String, Prompt> prompts = new ConcurrentHashMap<>();
+    private final Path watchDirectory;
+    private final WatchService watchService;
+
+    PromptRegistry(ResourcePatternResolver resourcePatternResolver,
+                   @Value("${app.prompts.watch-directory:}") String watchDirectory) throws IOException {
+        for (var resource : resourcePatternResolver.getResources("classpath:/prompts/*")) {
+            if (resource.isReadable() && resource.getFilename() != null) {
+                put(resource.getFilename(), resource.getContentAsString(StandardCharsets.UTF_8));
+            }
+        }
+        log.info("Loaded {} prompts from the classpath", prompts.size());
+
+        if (watchDirectory.isBlank()) {
+            this.watchDirectory = null;
+            this.watchService = null;
+            return;
+        }
+        this.watchDirectory = Path.of(watchDirectory).toAbsolutePath();
+        try (var files = Files.list(this.watchDirectory)) {
+            for (var file : files.filter(Files::isRegularFile).toList()) {
+                load(file);
+            }
+        }
+        this.watchService = this.watchDirectory.getFileSystem().newWatchService();
+        this.watchDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread.ofPlatform().name("prompt-watcher").daemon().start(this::watch);
+        log.info("Watching {} for prompt changes", this.watchDirectory);
+    }
+
+    PromptTemplate template(String name) {
+        return prompt(name).template();
+    }
+
+    String text(String name) {
+        return prompt(name).text();
+    }
+
+    private Prompt prompt(String name) {
+        var prompt = prompts.get(name);
+        if (prompt == null) {
+            throw new IllegalArgumentException("Unknown prompt " + name);
+        }
+        return prompt;
+    }
+
+    private void put(String name, String text) {
+        prompts.put(name, new Prompt(text, PromptTemplate.from(text)));
+    }
+
+    private void load(Path file) {
+        try {
+            put(file.getFileName().toString(), Files.readString(file));
+            log.info("Loaded prompt {} from {}", file.getFileName(), watchDirectory);
+        } catch (IOException | IllegalArgumentException e) {
+            // The previous version of the prompt stays in use, e.g. if the file is invalid or was deleted in the meantime
+            log.warn("Loading prompt {} failed: {}", file, e.getMessage());
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                var watchKey = watchService.take();
+                // Editors emit several events for one save, each file is loaded once per batch of events
+                var changedFiles = new HashSet<Path>();
+                for (var event : watchKey.pollEvents()) {
+                    if (event.context() instanceof Path file) {
+                        changedFiles.add(watchDirectory.resolve(file));
+                    }
+                }
+                changedFiles.stream().filter(Files::isRegularFile).forEach(this::load);
+                watchKey.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.debug("Prompt watcher stopped");
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private record Prompt(String text, PromptTemplate template) {
+    }
+}
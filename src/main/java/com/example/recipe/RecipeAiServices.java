@@ -1,7 +1,9 @@
 package com.example.recipe;
 
 import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.UserMessage;
+import dev.langchain4j.service.V;
 import dev.langchain4j.service.spring.AiService;
 import org.springframework.stereotype.Service;
 
@@ -10,38 +12,72 @@ import static dev.langchain4j.service.spring.AiServiceWiringMode.EXPLICIT;
 @Service
 class RecipeAiServices {
 
+	// The AiServices return the raw response instead of using structured output, so that the RecipeResponseParser can repair
+	// malformed JSON without another generation. The JSON format of the Recipe is described in the system messages, and
+	// the "chatModel" adds the JSON schema of the Recipe for providers with native structured output (see RecipeModelConfiguration).
+
 	// For AiService API example without annotations
 	interface Standard {
-		Recipe find(dev.langchain4j.data.message.UserMessage userMessage);
+		String find(dev.langchain4j.data.message.UserMessage userMessage);
 	}
 
 	// With the Spring Boot Starter chatModel, tools, etc. will be configured automatically.
 	// Therefore, switching to explicit wiring mode is required when more control is needed.
 	// To support multiple AI providers without relying on annotations like @Profile,
-	// RecipeFinderConfiguration registers the auto-configured ChatModel bean under the generic name "chatModel".
+	// RecipeModelConfiguration registers the auto-configured ChatModel bean under the generic name "chatModel".
 	// This breaks LangChain4j's current automatic wiring mechanism, so other AiService beans must also be wired explicitly.
 	@AiService(wiringMode = EXPLICIT, chatModel = "chatModel",
 			// Provides tools (methods annotated with @Tool) from the RecipeService bean
 			tools = {"recipeService"})
 	interface WithTools {
 		@UserMessage(fromResource = "/prompts/recipe-for-available-ingredients")
-		@SystemMessage(fromResource = "/prompts/fix-json-response")
-		Recipe find(String ingredients);
+		@SystemMessage(fromResource = "/prompts/json-recipe-response")
+		String find(String ingredients);
 	}
 
 	@AiService(wiringMode = EXPLICIT, chatModel = "chatModel",
-			// Enables RAG by registering an autoconfigured ContentRetriever bean
-			contentRetriever = "contentRetriever")
+			// Enables RAG by registering the ContentRetriever bean, which combines vector search with exact ingredient matches
+			contentRetriever = "hybridContentRetriever")
 	interface WithRag {
 		@UserMessage(fromResource = "/prompts/recipe-for-ingredients")
-		@SystemMessage(fromResource = "/prompts/fix-json-response-and-prefer-own-recipe")
-		Recipe find(String ingredients);
+		@SystemMessage(fromResource = "/prompts/json-recipe-response-and-prefer-own-recipe")
+		String find(String ingredients);
 	}
 
-	@AiService(wiringMode = EXPLICIT, chatModel = "chatModel", tools = {"recipeService"}, contentRetriever = "contentRetriever")
+	@AiService(wiringMode = EXPLICIT, chatModel = "chatModel", tools = {"recipeService"}, contentRetriever = "hybridContentRetriever")
 	interface WithToolsAndRag {
 		@UserMessage(fromResource = "/prompts/recipe-for-ingredients")
-		@SystemMessage(fromResource = "/prompts/fix-json-response-and-prefer-own-recipe")
-		Recipe find(String ingredients);
+		@SystemMessage(fromResource = "/prompts/json-recipe-response-and-prefer-own-recipe")
+		String find(String ingredients);
+	}
+
+	// Without tool calls, as the ingredients available at home are resolved before and inlined into the prompt.
+	// This saves the additional round trip of the model requesting the tool execution.
+	@AiService(wiringMode = EXPLICIT, chatModel = "chatModel", contentRetriever = "hybridContentRetriever")
+	interface WithRagAndPrefetchedTools {
+		@UserMessage(fromResource = "/prompts/recipe-for-prefetched-available-ingredients")
+		@SystemMessage(fromResource = "/prompts/json-recipe-response-and-prefer-own-recipe")
+		String find(@V("ingredients") String ingredients, @V("availableIngredients") String availableIngredients);
+	}
+
+	// Streaming variants of the AiServices above, whose responses are parsed while the tokens arrive
+	interface StreamingStandard {
+		TokenStream find(dev.langchain4j.data.message.UserMessage userMessage);
+	}
+
+	@AiService(wiringMode = EXPLICIT, streamingChatModel = "streamingChatModel", contentRetriever = "hybridContentRetriever")
+	interface StreamingWithRag {
+		@UserMessage(fromResource = "/prompts/recipe-for-ingredients")
+		@SystemMessage(fromResource = "/prompts/json-recipe-response-and-prefer-own-recipe")
+		TokenStream find(String ingredients);
+	}
+
+	// Streamed requests always use prefetched tools, as tools would be executed on a thread of the streaming response,
+	// which doesn't know the user of the request
+	@AiService(wiringMode = EXPLICIT, streamingChatModel = "streamingChatModel", contentRetriever = "hybridContentRetriever")
+	interface StreamingWithRagAndPrefetchedTools {
+		@UserMessage(fromResource = "/prompts/recipe-for-prefetched-available-ingredients")
+		@SystemMessage(fromResource = "/prompts/json-recipe-response-and-prefer-own-recipe")
+		TokenStream find(@V("ingredients") String ingredients, @V("availableIngredients") String availableIngredients);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,139 @@
+package com.example.recipe;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Generates the recipes of a batch in parallel and reports each recipe as soon as it's complete.
+// The concurrency cap applies per batch, the bulkheads of the models still limit the calls of all requests together.
+// Items share the recipe cache and in-flight requests with single recipe requests, so duplicate items are generated once.
+// Therefore a cancelled batch doesn't interrupt its items in progress, as other requests may wait for their recipes,
+// but only stops the items that haven't started yet.
+@Service
+class RecipeBatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(RecipeBatchService.class);
+
+    private final RecipeService recipeService;
+    private final int maxConcurrency;
+    private final int maxItems;
+    private final Counter successfulItems;
+    private final Counter failedItems;
+
+    RecipeBatchService(RecipeService recipeService, MeterRegistry meterRegistry,
+                       @Value("${app.batch.max-concurrency}") int maxConcurrency,
+                       @Value("${app.batch.max-items}") int maxItems) {
+        this.recipeService = recipeService;
+        this.maxConcurrency = maxConcurrency;
+        this.maxItems = maxItems;
+        this.successfulItems = meterRegistry.counter("recipe.batch.items", "outcome", "success");
+        this.failedItems = meterRegistry.counter("recipe.batch.items", "outcome", "failure");
+    }
+
+    // Separate from the generation, so that invalid batches are rejected before the response is committed
+    void validate(BatchRecipeRequest request) {
+        if (request.items() == null || request.items().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Batch without items");
+        }
+        if (request.items().size() > maxItems) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Batch with more than %d items".formatted(maxItems));
+        }
+    }
+
+    void fetchRecipesFor(String userId, BatchRecipeRequest request, BatchResultListener listener) throws IOException {
+        validate(request);
+        var items = request.items();
+        var permits = new Semaphore(maxConcurrency);
+        var cancelled = new AtomicBoolean();
+        BlockingQueue<BatchRecipeResult> results = new LinkedBlockingQueue<>();
+        // A virtual thread per item is cheap while waiting for a permit
+        var executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("recipe-batch-", 0).factory());
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                var index = i;
+                executor.execute(() -> results.add(fetchRecipeFor(userId, index, items.get(index), request.generateImages(), permits, cancelled)));
+            }
+            for (int i = 0; i < items.size(); i++) {
+                listener.onResult(results.take());
+            }
+        } catch (IOException | RuntimeException e) {
+            // E.g. the client disconnected, so the remaining items are obsolete
+            cancel(cancelled, permits, items.size());
+            throw e;
+        } catch (InterruptedException e) {
+            cancel(cancelled, permits, items.size());
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for batch results", e);
+        } finally {
+            // Items in progress of a cancelled batch complete in the background instead of blocking the response
+            executor.shutdown();
+        }
+    }
+
+    // Items waiting for a permit get one right away, and return without generating their recipe
+    private static void cancel(AtomicBoolean cancelled, Semaphore permits, int itemCount) {
+        cancelled.set(true);
+        permits.release(itemCount);
+    }
+
+    private BatchRecipeResult fetchRecipeFor(String userId, int index, BatchRecipeRequest.Item item, boolean generateImage, Semaphore permits,
+                                             AtomicBoolean cancelled) {
+        if (item == null || item.ingredients() == null || item.ingredients().stream().allMatch(String::isBlank)) {
+            failedItems.increment();
+            return new BatchRecipeResult(index, null, "No ingredients");
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new BatchRecipeResult(index, null, "Batch cancelled");
+        }
+        try {
+            if (cancelled.get()) {
+                return new BatchRecipeResult(index, null, "Batch cancelled");
+            }
+            var recipe = recipeService.fetchRecipeFor(userId, item.ingredients(), item.preferAvailableIngredients(),
+                    item.preferOwnRecipes(), generateImage);
+            successfulItems.increment();
+            return new BatchRecipeResult(index, recipe, null);
+        } catch (ResponseStatusException e) {
+            failedItems.increment();
+            return new BatchRecipeResult(index, null, e.getReason());
+        } catch (Exception e) {
+            log.warn("Recipe generation of batch item {} for ingredients '{}' failed: {}", index, item.ingredients(), e.getMessage());
+            failedItems.increment();
+            return new BatchRecipeResult(index, null, "Recipe generation failed");
+        } finally {
+            permits.release();
+        }
+    }
+
+    record BatchRecipeRequest(List<Item> items, boolean generateImages) {
+
+        record Item(List<String> ingredients, boolean preferAvailableIngredients, boolean preferOwnRecipes) {
+        }
+    }
+
+    // The index refers to the item of the request, as results are reported in order of completion
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record BatchRecipeResult(int index, Recipe recipe, String error) {
+    }
+
+    interface BatchResultListener {
+        void onResult(BatchRecipeResult result) throws IOException;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.recipe;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+// Bounded response cache for generated recipes with size- and TTL-based eviction.
+// If a Redis client is available, entries are also shared between nodes. After a Redis failure, the Redis tier is skipped
+// for the retry interval, so that misses don't pay the Redis timeout while Redis is unreachable.
+@Component
+class RecipeCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RecipeCache.class);
+    private static final String REDIS_KEY_PREFIX = "recipe-cache:";
+
+    private final Optional<JedisPooled> redisClient;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration redisRetryInterval;
+    private final Clock clock;
+    private final Map<RecipeCacheKey, CachedRecipe> localEntries;
+    private volatile Instant redisSkippedUntil = Instant.MIN;
+
+    private final Counter localHits;
+    private final Counter redisHits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+
+    @Autowired
+    RecipeCache(Optional<JedisPooled> redisClient, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                @Value("${app.recipe-cache.max-size}") int maxSize, @Value("${app.recipe-cache.ttl}") Duration ttl,
+                @Value("${app.recipe-cache.redis-retry-interval}") Duration redisRetryInterval) {
+        this(redisClient, objectMapper, meterRegistry, maxSize, ttl, redisRetryInterval, Clock.systemUTC());
+    }
+
+    RecipeCache(Optional<JedisPooled> redisClient, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                int maxSize, Duration ttl, Duration redisRetryInterval, Clock clock) {
+        this.redisClient = redisClient;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.redisRetryInterval = redisRetryInterval;
+        this.clock = clock;
+        this.localHits = meterRegistry.counter("recipe.cache.requests", "result", "hit", "tier", "local");
+        this.redisHits = meterRegistry.counter("recipe.cache.requests", "result", "hit", "tier", "redis");
+        this.misses = meterRegistry.counter("recipe.cache.requests", "result", "miss");
+        this.sizeEvictions = meterRegistry.counter("recipe.cache.evictions", "cause", "size");
+        this.expiredEvictions = meterRegistry.counter("recipe.cache.evictions", "cause", "expired");
+        // Access-ordered map to evict the least recently used entry once the max size is exceeded
+        this.localEntries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RecipeCacheKey, CachedRecipe> eldest) {
+                var evict = size() > maxSize;
+                if (evict) {
+                    sizeEvictions.increment();
+                }
+                return evict;
+            }
+        };
+
+        meterRegistry.gaugeMapSize("recipe.cache.size", Tags.empty(), localEntries);
+    }
+
+    Optional<Recipe> get(RecipeCacheKey key) {
+        synchronized (localEntries) {
+            var cachedRecipe = localEntries.get(key);
+            if (cachedRecipe != null) {
+                if (cachedRecipe.expiresAt().isAfter(clock.instant())) {
+                    localHits.increment();
+                    return Optional.of(cachedRecipe.recipe());
+                }
+                localEntries.remove(key);
+                expiredEvictions.increment();
+            }
+        }
+
+        var sharedRecipe = availableRedisClient().flatMap(client -> getFromRedis(client, key));
+        if (sharedRecipe.isPresent()) {
+            redisHits.increment();
+            putLocal(key, sharedRecipe.get());
+            return sharedRecipe;
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    void put(RecipeCacheKey key, Recipe recipe) {
+        putLocal(key, recipe);
+        availableRedisClient().ifPresent(client -> putToRedis(client, key, recipe));
+    }
+
+    private void putLocal(RecipeCacheKey key, Recipe recipe) {
+        synchronized (localEntries) {
+            localEntries.put(key, new CachedRecipe(recipe, clock.instant().plus(ttl)));
+        }
+    }
+
+    private Optional<JedisPooled> availableRedisClient() {
+        return redisSkippedUntil.isAfter(clock.instant()) ? Optional.empty() : redisClient;
+    }
+
+    private void skipRedis(Exception e) {
+        redisSkippedUntil = clock.instant().plus(redisRetryInterval);
+        log.warn("Redis cache unavailable, skipping it for {}: {}", redisRetryInterval, e.getMessage());
+    }
+
+    // Redis is an optional second tier, so failures are logged and treated as cache misses
+    private Optional<Recipe> getFromRedis(JedisPooled client, RecipeCacheKey key) {
+        String json;
+        try {
+            json = client.get(REDIS_KEY_PREFIX + key.asString());
+        } catch (JedisException e) {
+            skipRedis(e);
+            return Optional.empty();
+        }
+        try {
+            return json == null ? Optional.empty() : Optional.of(objectMapper.readValue(json, Recipe.class));
+        } catch (Exception e) {
+            log.warn("Reading recipe for '{}' from Redis cache failed: {}", key.asString(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void putToRedis(JedisPooled client, RecipeCacheKey key, Recipe recipe) {
+        try {
+            client.setex(REDIS_KEY_PREFIX + key.asString(), ttl.toSeconds(), objectMapper.writeValueAsString(recipe));
+        } catch (JedisException e) {
+            skipRedis(e);
+        } catch (Exception e) {
+            log.warn("Writing recipe for '{}' to Redis cache failed: {}", key.asString(), e.getMessage());
+        }
+    }
+
+    private record CachedRecipe(Recipe recipe, Instant expiresAt) {
+    }
+}
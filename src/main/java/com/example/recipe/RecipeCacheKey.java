@@ -0,0 +1,42 @@
+package com.example.recipe;
+
+import java.util.List;
+import java.util.Locale;
+
+// Canonical form of a recipe request: trimmed, lower-cased, de-duplicated and order-insensitive ingredients plus mode flags.
+// If available ingredients are preferred, the ingredients available at home are part of the key in their order of priority,
+// so that users with different fridge contents don't share recipes.
+record RecipeCacheKey(List<String> ingredients, boolean preferAvailableIngredients, boolean preferOwnRecipes,
+                      List<String> availableIngredients) {
+
+    static RecipeCacheKey of(List<String> ingredients, boolean preferAvailableIngredients, boolean preferOwnRecipes,
+                             List<String> availableIngredients) {
+        var canonicalIngredients = ingredients.stream()
+                .map(RecipeCacheKey::canonical)
+                .filter(ingredient -> !ingredient.isEmpty())
+                .distinct()
+                .sorted()
+                .toList();
+        var canonicalAvailableIngredients = preferAvailableIngredients
+                ? availableIngredients.stream().map(RecipeCacheKey::canonical).filter(ingredient -> !ingredient.isEmpty()).distinct().toList()
+                : List.<String>of();
+        return new RecipeCacheKey(canonicalIngredients, preferAvailableIngredients, preferOwnRecipes, canonicalAvailableIngredients);
+    }
+
+    String asString() {
+        return "%s|%s|%s|%s".formatted(String.join(",", ingredients), preferAvailableIngredients, preferOwnRecipes,
+                String.join(",", availableIngredients));
+    }
+
+    // Name of the mode for metrics
+    String mode() {
+        if (preferAvailableIngredients && preferOwnRecipes) {
+            return "tools-and-rag";
+        }
+        return preferAvailableIngredients ? "tools" : preferOwnRecipes ? "rag" : "standard";
+    }
+
+    private static String canonical(String ingredient) {
+        return ingredient.trim().toLowerCase(Locale.ROOT);
+    }
+}
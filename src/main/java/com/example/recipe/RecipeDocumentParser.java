@@ -0,0 +1,83 @@
+package com.example.recipe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+// Heuristic extraction of recipes from the text of uploaded documents, for the common layout of a name, an ingredients
+// section and an instructions section. Recipes that don't follow this layout are only available via the vector search.
+final class RecipeDocumentParser {
+
+    private static final Pattern INGREDIENTS_HEADING = Pattern.compile("(?i)ingredients?\\s*:?");
+    private static final Pattern INSTRUCTIONS_HEADING = Pattern.compile("(?i)(instructions|directions|method|preparation|steps)\\s*:?");
+    private static final Pattern METADATA_LINE = Pattern.compile("(?i)(serves|servings|yield|makes|prep|cook|total|time)\\b.*");
+    private static final Pattern LIST_MARKER = Pattern.compile("^([-*\\u2022\\u00b7\\u25aa]|\\d+[.)])\\s*");
+
+    private RecipeDocumentParser() {
+    }
+
+    static List<Recipe> parse(String text) {
+        var lines = text.lines().map(String::strip).toList();
+        var ingredientsHeadings = new ArrayList<Integer>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (INGREDIENTS_HEADING.matcher(lines.get(i)).matches()) {
+                ingredientsHeadings.add(i);
+            }
+        }
+
+        var recipes = new ArrayList<Recipe>();
+        for (int i = 0; i < ingredientsHeadings.size(); i++) {
+            var ingredientsHeading = ingredientsHeadings.get(i);
+            var previousHeading = i > 0 ? ingredientsHeadings.get(i - 1) : -1;
+            var nameLine = findNameLine(lines, ingredientsHeading, previousHeading);
+            if (nameLine < 0) {
+                continue;
+            }
+
+            // A recipe ends with the name of the next one and its metadata like the number of servings
+            var end = lines.size();
+            if (i + 1 < ingredientsHeadings.size()) {
+                var nextNameLine = findNameLine(lines, ingredientsHeadings.get(i + 1), ingredientsHeading);
+                end = nextNameLine < 0 ? ingredientsHeadings.get(i + 1) : nextNameLine;
+            }
+            var instructionsHeading = -1;
+            for (int line = ingredientsHeading + 1; line < end && instructionsHeading < 0; line++) {
+                if (INSTRUCTIONS_HEADING.matcher(lines.get(line)).matches()) {
+                    instructionsHeading = line;
+                }
+            }
+            if (instructionsHeading < 0) {
+                continue;
+            }
+            while (end - 1 > instructionsHeading && (lines.get(end - 1).isEmpty() || METADATA_LINE.matcher(lines.get(end - 1)).matches())) {
+                end--;
+            }
+
+            var description = String.join(" ", lines.subList(nameLine + 1, ingredientsHeading).stream().filter(line -> !line.isEmpty()).toList());
+            var ingredients = listItems(lines.subList(ingredientsHeading + 1, instructionsHeading));
+            var instructions = listItems(lines.subList(instructionsHeading + 1, end));
+            if (!ingredients.isEmpty() && !instructions.isEmpty()) {
+                recipes.add(new Recipe(lines.get(nameLine), description, ingredients, instructions, ""));
+            }
+        }
+        return recipes;
+    }
+
+    // The name is the closest line before the ingredients heading that isn't metadata like the number of servings
+    private static int findNameLine(List<String> lines, int ingredientsHeading, int lowerBound) {
+        for (int line = ingredientsHeading - 1; line > lowerBound; line--) {
+            var text = lines.get(line);
+            if (!text.isEmpty() && !METADATA_LINE.matcher(text).matches()) {
+                return line;
+            }
+        }
+        return -1;
+    }
+
+    private static List<String> listItems(List<String> lines) {
+        return lines.stream()
+                .map(line -> LIST_MARKER.matcher(line).replaceFirst(""))
+                .filter(line -> !line.isBlank())
+                .toList();
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.recipe;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+@RestController
+@RequestMapping(RecipeImageService.IMAGE_HANDLE_PATH)
+class RecipeImageResource {
+
+    private static final Logger log = LoggerFactory.getLogger(RecipeImageResource.class);
+    private static final Duration IMAGE_EVENTS_TIMEOUT = Duration.ofMinutes(5);
+    private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+    private final RecipeImageService recipeImageService;
+    private final RecipeImageStore recipeImageStore;
+
+    RecipeImageResource(RecipeImageService recipeImageService, RecipeImageStore recipeImageStore) {
+        this.recipeImageService = recipeImageService;
+        this.recipeImageStore = recipeImageStore;
+    }
+
+    // Redirects to the generated image once it's ready, otherwise clients should poll again
+    @GetMapping("{id}")
+    ResponseEntity<Void> fetchImage(@PathVariable String id) {
+        var imageUrl = findImage(id).imageUrl();
+        if (!imageUrl.isDone()) {
+            return ResponseEntity.accepted().header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        if (imageUrl.isCompletedExceptionally()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Image generation failed");
+        }
+        return ResponseEntity.status(HttpStatus.FOUND).location(URI.create(imageUrl.join())).build();
+    }
+
+    // Pushes the URL of the generated image as server-sent event once it's ready
+    @GetMapping(path = "{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    SseEmitter fetchImageEvents(@PathVariable String id) {
+        var image = findImage(id);
+        var emitter = new SseEmitter(IMAGE_EVENTS_TIMEOUT.toMillis());
+        image.imageUrl().whenComplete((imageUrl, error) -> {
+            try {
+                if (error == null) {
+                    emitter.send(SseEmitter.event().name("image").data(imageUrl));
+                } else {
+                    emitter.send(SseEmitter.event().name("error").data("Image generation failed"));
+                }
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Sending image event for {} failed: {}", id, e.getMessage());
+            }
+        });
+        return emitter;
+    }
+
+    // Serves stored images with strong caching headers. The content is sent with Tomcat's sendfile support (zero-copy) if available.
+    @GetMapping("files/{fileName}")
+    void fetchImageFile(@PathVariable String fileName, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        var image = recipeImageStore.findImage(fileName)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown image " + fileName));
+
+        response.setHeader(HttpHeaders.ETAG, image.etag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable().getHeaderValue());
+        if (image.etag().equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        response.setContentType(image.contentType());
+        response.setContentLengthLong(image.size());
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, image.path().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTRIBUTE, 0L);
+            request.setAttribute(SENDFILE_END_ATTRIBUTE, image.size());
+            return;
+        }
+        try (var fileChannel = FileChannel.open(image.path(), StandardOpenOption.READ)) {
+            var outputChannel = Channels.newChannel(response.getOutputStream());
+            for (long position = 0; position < image.size(); ) {
+                var transferred = fileChannel.transferTo(position, image.size() - position, outputChannel);
+                // Nothing left to transfer if the file was truncated or replaced, the response fails as it's shorter than its content length
+                if (transferred <= 0) {
+                    throw new IOException("Image file %s ended after %d of %d bytes".formatted(fileName, position, image.size()));
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    private RecipeImageService.RecipeImage findImage(String id) {
+        return recipeImageService.findImage(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown image " + id));
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.recipe;
+
+import dev.langchain4j.data.image.Image;
+import dev.langchain4j.model.image.ImageModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Generates recipe images asynchronously on a bounded executor, so that recipes can be returned without waiting for the image model.
+// Recipes get the URL of a pending image handle, that resolves to the generated image once it's ready.
+// Generated images are downloaded once into the RecipeImageStore and served by the application instead of the provider.
+@Service
+class RecipeImageService {
+
+    private static final Logger log = LoggerFactory.getLogger(RecipeImageService.class);
+    static final String IMAGE_HANDLE_PATH = "/api/v1/recipes/images/";
+    static final String IMAGE_FILE_PATH = IMAGE_HANDLE_PATH + "files/";
+
+    private final Optional<ImageModel> imageModel;
+    private final RecipeImageStore recipeImageStore;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final ThreadPoolExecutor imageGenerationExecutor;
+    private final Map<String, RecipeImage> images;
+    private final PromptRegistry promptRegistry;
+    private final ModelBulkhead imageModelBulkhead;
+
+    RecipeImageService(Optional<ImageModel> imageModel, RecipeImageStore recipeImageStore, PromptRegistry promptRegistry,
+                       ModelBulkhead imageModelBulkhead, MeterRegistry meterRegistry,
+                       @Value("${app.image-generation.threads}") int threads,
+                       @Value("${app.image-generation.queue-capacity}") int queueCapacity,
+                       @Value("${app.image-generation.max-images}") int maxImages) {
+        this.imageModel = imageModel;
+        this.recipeImageStore = recipeImageStore;
+        this.promptRegistry = promptRegistry;
+        this.imageModelBulkhead = imageModelBulkhead;
+        // Image generation mostly waits for the image model, so virtual threads are sufficient
+        this.imageGenerationExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), Thread.ofVirtual().name("image-generation-", 0).factory());
+        // Access-ordered map to forget the least recently requested image handles
+        this.images = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RecipeImage> eldest) {
+                return size() > maxImages;
+            }
+        };
+        meterRegistry.gauge("recipe.images.queued", imageGenerationExecutor, executor -> executor.getQueue().size());
+    }
+
+    // Returns the recipe with the URL of a pending image handle, or unchanged if no ImageModel is available
+    Recipe withImage(Recipe recipe) {
+        if (imageModel.isEmpty() || recipe.name() == null || recipe.name().isBlank()) {
+            return recipe;
+        }
+
+        // A stored image for the same dish makes the image model call obsolete
+        var storedFileName = recipeImageStore.findFileNameByRecipeName(recipe.name());
+        if (storedFileName.isPresent()) {
+            return new Recipe(recipe, IMAGE_FILE_PATH + storedFileName.get());
+        }
+
+        // Images are identified by the normalized recipe name, so that the same dish shares one image
+        var id = UUID.nameUUIDFromBytes(RecipeImageStore.normalizeRecipeName(recipe.name()).getBytes(StandardCharsets.UTF_8)).toString();
+        synchronized (images) {
+            var image = images.get(id);
+            if (image == null || image.imageUrl().isCompletedExceptionally()) {
+                image = new RecipeImage(id, new CompletableFuture<>());
+                try {
+                    var imageUrl = image.imageUrl();
+                    imageGenerationExecutor.execute(() -> generateImage(recipe.name(), imageUrl));
+                } catch (RejectedExecutionException e) {
+                    log.warn("Image generation queue is full. Returning recipe '{}' without image.", recipe.name());
+                    return recipe;
+                }
+                images.put(id, image);
+            }
+        }
+        return new Recipe(recipe, IMAGE_HANDLE_PATH + id);
+    }
+
+    Optional<RecipeImage> findImage(String id) {
+        synchronized (images) {
+            return Optional.ofNullable(images.get(id));
+        }
+    }
+
+    private void generateImage(String recipeName, CompletableFuture<String> imageUrl) {
+        log.info("Image generation for recipe '{}' started", recipeName);
+        try {
+            // Only low-level API available for image models
+            var imagePromptTemplate = promptRegistry.template("image-for-recipe")
+                    .apply(Map.of("recipe", recipeName));
+            var generatedImage = imageModelBulkhead.call(() -> imageModel.orElseThrow().generate(imagePromptTemplate.text())).content();
+            imageUrl.complete(storeImage(recipeName, generatedImage));
+        } catch (Exception e) {
+            log.warn("Image generation failed for recipe '{}': {}", recipeName, e.getMessage());
+            imageUrl.completeExceptionally(e);
+        }
+    }
+
+    // Provider URLs of generated images are temporary, therefore the image is downloaded once and served by the application.
+    // The image is unavailable if it can't be stored and the provider returned no URL either.
+    private String storeImage(String recipeName, Image image) throws IOException, InterruptedException {
+        if (image.base64Data() == null && image.url() == null) {
+            throw new IOException("Image model returned neither image data nor URL");
+        }
+        try {
+            if (image.base64Data() != null) {
+                var content = Base64.getDecoder().decode(image.base64Data());
+                return IMAGE_FILE_PATH + recipeImageStore.store(recipeName, content, extensionFor(image.mimeType()));
+            }
+
+            var request = HttpRequest.newBuilder(image.url()).timeout(Duration.ofSeconds(30)).GET().build();
+            var response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                throw new IOException("Unexpected status code " + response.statusCode());
+            }
+            var contentType = response.headers().firstValue(HttpHeaders.CONTENT_TYPE).orElse(image.mimeType());
+            return IMAGE_FILE_PATH + recipeImageStore.store(recipeName, response.body(), extensionFor(contentType));
+        } catch (IOException e) {
+            if (image.url() == null) {
+                throw e;
+            }
+            log.warn("Storing image for recipe '{}' failed: {}. Using provider URL instead.", recipeName, e.getMessage());
+            return image.url().toString();
+        }
+    }
+
+    private static String extensionFor(String contentType) {
+        if (contentType == null) {
+            return "png";
+        }
+        if (contentType.startsWith("image/jpeg")) {
+            return "jpg";
+        }
+        return contentType.startsWith("image/webp") ? "webp" : "png";
+    }
+
+    @PreDestroy
+    void shutdown() {
+        imageGenerationExecutor.shutdownNow();
+    }
+
+    record RecipeImage(String id, CompletableFuture<String> imageUrl) {
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.recipe;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+// Content-addressed disk store for generated recipe images.
+// Images are stored once by the SHA-256 hash of their content and additionally indexed by the normalized recipe name,
+// so that the same dish never has to be generated again. The least recently used images are evicted if the disk quota is exceeded.
+@Component
+class RecipeImageStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RecipeImageStore.class);
+    private static final Pattern FILE_NAME_PATTERN = Pattern.compile("[0-9a-f]{64}\\.(png|jpg|webp)");
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final Path contentDirectory;
+    private final Path namesDirectory;
+    private final long maxSizeInBytes;
+    private final Map<String, StoredImage> imagesByFileName = new HashMap<>();
+    private final Map<String, String> fileNamesByRecipeName = new HashMap<>();
+    private long sizeInBytes;
+
+    private final Counter nameHits;
+    private final Counter nameMisses;
+    private final Counter evictions;
+
+    RecipeImageStore(@Value("${app.image-store.directory}") Path directory, @Value("${app.image-store.max-size}") DataSize maxSize,
+                     MeterRegistry meterRegistry) throws IOException {
+        this.contentDirectory = Files.createDirectories(directory.resolve("content"));
+        this.namesDirectory = Files.createDirectories(directory.resolve("names"));
+        this.maxSizeInBytes = maxSize.toBytes();
+        this.nameHits = meterRegistry.counter("recipe.images.store.requests", "result", "hit");
+        this.nameMisses = meterRegistry.counter("recipe.images.store.requests", "result", "miss");
+        this.evictions = meterRegistry.counter("recipe.images.store.evictions");
+        loadIndex();
+        meterRegistry.gauge("recipe.images.store.size", this, store -> store.sizeInBytes);
+    }
+
+    static String normalizeRecipeName(String recipeName) {
+        return recipeName.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    synchronized Optional<String> findFileNameByRecipeName(String recipeName) {
+        var fileName = fileNamesByRecipeName.get(nameKey(recipeName));
+        var image = fileName == null ? null : imagesByFileName.get(fileName);
+        if (image == null) {
+            nameMisses.increment();
+            return Optional.empty();
+        }
+        nameHits.increment();
+        image.lastAccess = System.nanoTime();
+        return Optional.of(fileName);
+    }
+
+    synchronized Optional<StoredImage> findImage(String fileName) {
+        if (!FILE_NAME_PATTERN.matcher(fileName).matches()) {
+            return Optional.empty();
+        }
+        var image = imagesByFileName.get(fileName);
+        if (image != null) {
+            image.lastAccess = System.nanoTime();
+        }
+        return Optional.ofNullable(image);
+    }
+
+    // Stores the image content, if not already present, and returns its file name
+    synchronized String store(String recipeName, byte[] content, String extension) throws IOException {
+        var fileName = sha256(content) + "." + extension;
+        if (!imagesByFileName.containsKey(fileName)) {
+            var path = contentDirectory.resolve(fileName);
+            writeAtomically(path, content);
+            imagesByFileName.put(fileName, new StoredImage(fileName, path, content.length));
+            sizeInBytes += content.length;
+        }
+
+        var nameKey = nameKey(recipeName);
+        writeAtomically(namesDirectory.resolve(nameKey), fileName.getBytes(StandardCharsets.UTF_8));
+        fileNamesByRecipeName.put(nameKey, fileName);
+
+        evictLeastRecentlyUsed(fileName);
+        return fileName;
+    }
+
+    private void evictLeastRecentlyUsed(String retainedFileName) {
+        while (sizeInBytes > maxSizeInBytes) {
+            var leastRecentlyUsed = imagesByFileName.values().stream()
+                    .filter(image -> !image.fileName().equals(retainedFileName))
+                    .min(Comparator.comparingLong(image -> image.lastAccess));
+            if (leastRecentlyUsed.isEmpty()) {
+                return;
+            }
+
+            var image = leastRecentlyUsed.get();
+            try {
+                Files.deleteIfExists(image.path());
+                imagesByFileName.remove(image.fileName());
+                sizeInBytes -= image.size();
+                evictions.increment();
+                // Name index entries of an evicted image are removed, so that the image is generated again if needed
+                var nameKeys = fileNamesByRecipeName.entrySet().stream()
+                        .filter(entry -> entry.getValue().equals(image.fileName()))
+                        .map(Map.Entry::getKey)
+                        .toList();
+                for (var nameKey : nameKeys) {
+                    fileNamesByRecipeName.remove(nameKey);
+                    Files.deleteIfExists(namesDirectory.resolve(nameKey));
+                }
+                log.info("Evicted recipe image {} to stay within the disk quota", image.fileName());
+            } catch (IOException e) {
+                log.warn("Evicting recipe image {} failed: {}", image.fileName(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        try (var contentFiles = Files.list(contentDirectory)) {
+            contentFiles.filter(path -> !deleteTempFile(path))
+                    .filter(path -> FILE_NAME_PATTERN.matcher(path.getFileName().toString()).matches()).forEach(path -> {
+                try {
+                    var image = new StoredImage(path.getFileName().toString(), path, Files.size(path));
+                    // Last modification time approximates the last access of images stored before the restart
+                    image.lastAccess = System.nanoTime() - (System.currentTimeMillis() - Files.getLastModifiedTime(path).toMillis()) * 1_000_000;
+                    imagesByFileName.put(image.fileName(), image);
+                    sizeInBytes += image.size();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        try (var nameFiles = Files.list(namesDirectory)) {
+            nameFiles.filter(path -> !deleteTempFile(path)).forEach(path -> {
+                try {
+                    fileNamesByRecipeName.put(path.getFileName().toString(), Files.readString(path).trim());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        log.info("Loaded {} recipe images ({} bytes) from {}", imagesByFileName.size(), sizeInBytes, contentDirectory);
+    }
+
+    // Temp files are left over by writes that didn't complete, e.g. because of a crash
+    private static boolean deleteTempFile(Path path) {
+        if (!path.getFileName().toString().endsWith(TEMP_FILE_SUFFIX)) {
+            return false;
+        }
+        try {
+            Files.deleteIfExists(path);
+            log.info("Deleted incomplete recipe image file {}", path);
+        } catch (IOException e) {
+            log.warn("Deleting incomplete recipe image file {} failed: {}", path, e.getMessage());
+        }
+        return true;
+    }
+
+    private static void writeAtomically(Path path, byte[] content) throws IOException {
+        var tempFile = Files.createTempFile(path.getParent(), path.getFileName().toString(), TEMP_FILE_SUFFIX);
+        Files.write(tempFile, content);
+        Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String nameKey(String recipeName) {
+        return sha256(normalizeRecipeName(recipeName).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static final class StoredImage {
+
+        private final String fileName;
+        private final Path path;
+        private final long size;
+        private volatile long lastAccess = System.nanoTime();
+
+        private StoredImage(String fileName, Path path, long size) {
+            this.fileName = fileName;
+            this.path = path;
+            this.size = size;
+        }
+
+        String fileName() {
+            return fileName;
+        }
+
+        Path path() {
+            return path;
+        }
+
+        long size() {
+            return size;
+        }
+
+        // The file name starts with the SHA-256 hash of the content, which makes it a strong ETag
+        String etag() {
+            return "\"" + fileName.substring(0, fileName.indexOf('.')) + "\"";
+        }
+
+        String contentType() {
+            return switch (fileName.substring(fileName.indexOf('.') + 1)) {
+                case "jpg" -> "image/jpeg";
+                case "webp" -> "image/webp";
+                default -> "image/png";
+            };
+        }
+    }
+}
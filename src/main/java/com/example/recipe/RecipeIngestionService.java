@@ -0,0 +1,389 @@
+package com.example.recipe;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// ETL pipeline orchestrating the flow from raw data sources to a structured vector store.
+// Documents are ingested asynchronously as jobs: pages are parsed in parallel, and the resulting segments are embedded
+// in batches and written to the EmbeddingStore in bulk, while other documents are still being parsed.
+// Ingestion is incremental: segments already stored are skipped, and embeddings are reused from a persistent cache.
+// Segments and the recipes parsed from each document are also added to the IngredientIndex for hybrid retrieval.
+// Created with the first ingestion, so that the executors, the caches and PDFBox aren't loaded at startup.
+@Lazy
+@Service
+class RecipeIngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RecipeIngestionService.class);
+
+    private final DocumentSplitter documentSplitter;
+    private final EmbeddingModel embeddingModel;
+    private final ModelBulkhead embeddingModelBulkhead;
+    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final EmbeddingCache embeddingCache;
+    private final IngredientIndex ingredientIndex;
+    // Ingestions of documents and writes of segments by hash, so that duplicates wait for the pending ingestion or write.
+    // Failed ones are removed, so that they are retried with the next ingestion of the document.
+    private final Map<String, CompletableFuture<Void>> documentIngestions = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> segmentWrites = new ConcurrentHashMap<>();
+    private final int parserThreads;
+    private final int embeddingBatchSize;
+    private final ExecutorService jobExecutor;
+    private final ExecutorService parserExecutor;
+    private final ExecutorService embeddingExecutor;
+    private final Map<String, IngestionJob> jobs;
+
+    // Throughput of the ingestion pipeline per stage
+    private final Counter parsedPages;
+    private final Counter storedSegments;
+    private final Counter skippedSegments;
+    private final Counter cachedEmbeddings;
+    private final Counter modelEmbeddings;
+    private final Counter indexedRecipes;
+    private final Timer completedJobs;
+    private final Timer failedJobs;
+
+    RecipeIngestionService(DocumentSplitter documentSplitter, EmbeddingModel embeddingModel, ModelBulkhead embeddingModelBulkhead,
+                           EmbeddingStore<TextSegment> embeddingStore, EmbeddingCache embeddingCache, IngredientIndex ingredientIndex,
+                           @Value("${app.ingestion.parser-threads}") int parserThreads,
+                           @Value("${app.ingestion.embedding-batch-size}") int embeddingBatchSize,
+                           @Value("${app.ingestion.embedding-concurrency}") int embeddingConcurrency,
+                           @Value("${app.ingestion.max-concurrent-jobs}") int maxConcurrentJobs,
+                           @Value("${app.ingestion.max-jobs}") int maxJobs, MeterRegistry meterRegistry) {
+        this.documentSplitter = documentSplitter;
+        this.embeddingModel = embeddingModel;
+        this.embeddingModelBulkhead = embeddingModelBulkhead;
+        this.embeddingStore = embeddingStore;
+        this.embeddingCache = embeddingCache;
+        this.ingredientIndex = ingredientIndex;
+        this.parserThreads = parserThreads;
+        this.embeddingBatchSize = embeddingBatchSize;
+        this.jobExecutor = Executors.newFixedThreadPool(maxConcurrentJobs, Thread.ofPlatform().name("ingestion-job-", 0).factory());
+        this.parserExecutor = Executors.newFixedThreadPool(parserThreads, Thread.ofPlatform().name("ingestion-parser-", 0).factory());
+        // Embedding batches mostly wait for the embedding model, whose concurrency is also limited by the embedding bulkhead
+        this.embeddingExecutor = Executors.newFixedThreadPool(embeddingConcurrency, Thread.ofVirtual().name("ingestion-embedding-", 0).factory());
+        this.parsedPages = meterRegistry.counter("ingestion.pages");
+        this.storedSegments = meterRegistry.counter("ingestion.segments", "outcome", "stored");
+        this.skippedSegments = meterRegistry.counter("ingestion.segments", "outcome", "skipped");
+        this.cachedEmbeddings = meterRegistry.counter("ingestion.embeddings", "source", "cache");
+        this.modelEmbeddings = meterRegistry.counter("ingestion.embeddings", "source", "model");
+        this.indexedRecipes = meterRegistry.counter("ingestion.recipes");
+        this.completedJobs = meterRegistry.timer("ingestion.jobs", "outcome", "completed");
+        this.failedJobs = meterRegistry.timer("ingestion.jobs", "outcome", "failed");
+        // Access-ordered map to forget the status of the least recently requested jobs
+        this.jobs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IngestionJob> eldest) {
+                return size() > maxJobs && eldest.getValue().completion().isDone();
+            }
+        };
+    }
+
+    // Copies the documents, as e.g. uploaded files are deleted after the request, and returns the job ingesting them in the background
+    IngestionJob submit(List<Resource> pdfResources) throws IOException {
+        var files = new ArrayList<Path>();
+        try {
+            for (var pdfResource : pdfResources) {
+                var file = Files.createTempFile("recipe-ingestion-", ".pdf");
+                files.add(file);
+                try (var inputStream = pdfResource.getInputStream()) {
+                    Files.copy(inputStream, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } catch (IOException e) {
+            deleteFiles(files);
+            throw e;
+        }
+
+        var job = new IngestionJob(pdfResources.stream().map(Resource::getFilename).toList());
+        synchronized (jobs) {
+            jobs.put(job.id(), job);
+        }
+        jobExecutor.execute(() -> run(job, files));
+        return job;
+    }
+
+    Optional<IngestionJob> findJob(String id) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(id));
+        }
+    }
+
+    private void run(IngestionJob job, List<Path> files) {
+        var startTime = System.nanoTime();
+        job.started();
+        log.info("Ingestion job {} for {} started", job.id(), job.fileNames());
+        var fileCompletions = new ArrayList<CompletableFuture<Void>>();
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                fileCompletions.add(ingest(job, files.get(i), job.fileNames().get(i)));
+            }
+            CompletableFuture.allOf(fileCompletions.toArray(CompletableFuture[]::new)).join();
+            job.completed();
+            completedJobs.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            log.info("Ingestion job {} completed: {}", job.id(), job.status());
+        } catch (Exception e) {
+            log.warn("Ingestion job {} failed: {}", job.id(), e.getMessage());
+            job.failed(e.getCause() != null ? e.getCause() : e);
+            failedJobs.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        } finally {
+            // Files of a failed job are only deleted once other files of the job aren't parsed anymore
+            CompletableFuture.allOf(fileCompletions.toArray(CompletableFuture[]::new)).exceptionally(error -> null).join();
+            deleteFiles(files);
+        }
+    }
+
+    private CompletableFuture<Void> ingest(IngestionJob job, Path file, String fileName) throws IOException {
+        // Documents are identified by the hash of their content, so that a document ingested before is skipped entirely
+        var documentHash = EmbeddingCache.hash(file);
+        var ingestion = new CompletableFuture<Void>();
+        var pendingIngestion = documentIngestions.putIfAbsent(documentHash, ingestion);
+        if (pendingIngestion != null) {
+            log.info("Skipping document {}, as it is already ingested", fileName);
+            return pendingIngestion;
+        }
+
+        ingestion.whenComplete((result, error) -> {
+            if (error != null) {
+                documentIngestions.remove(documentHash, ingestion);
+            }
+        });
+        try {
+            ingestPages(job, file, fileName).whenComplete((result, error) -> {
+                if (error != null) {
+                    ingestion.completeExceptionally(error);
+                } else {
+                    ingestion.complete(null);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            ingestion.completeExceptionally(e);
+        }
+        return ingestion;
+    }
+
+    private CompletableFuture<Void> ingestPages(IngestionJob job, Path file, String fileName) throws IOException {
+        int pageCount;
+        try (var pdfDocument = loadPdf(file, fileName)) {
+            pageCount = pdfDocument.getNumberOfPages();
+        }
+        job.addPages(pageCount);
+
+        // Extract: Each parser thread parses a contiguous range of pages from its own PDDocument instance, as those aren't thread-safe
+        var pagesPerRange = Math.max(1, (int) Math.ceil((double) pageCount / parserThreads));
+        var rangeCompletions = new ArrayList<CompletableFuture<Void>>();
+        var rangeTexts = new ConcurrentSkipListMap<Integer, String>();
+        for (int startPage = 1; startPage <= pageCount; startPage += pagesPerRange) {
+            var endPage = Math.min(startPage + pagesPerRange - 1, pageCount);
+            var firstPage = startPage;
+            rangeCompletions.add(CompletableFuture.runAsync(() -> rangeTexts.put(firstPage, parse(job, file, fileName, firstPage, endPage)),
+                    parserExecutor));
+        }
+        // The text of all page ranges is split and parsed for recipes as a whole, so that segments overlap and recipes aren't cut
+        // at the boundaries of the page ranges of different parser threads
+        return CompletableFuture.allOf(rangeCompletions.toArray(CompletableFuture[]::new))
+                .thenApply(result -> String.join("", rangeTexts.values()))
+                .thenCompose(text -> transformAndLoad(job, fileName, pageCount, text).thenRun(() -> indexRecipes(job, text)));
+    }
+
+    private String parse(IngestionJob job, Path file, String fileName, int startPage, int endPage) {
+        try (var pdfDocument = loadPdf(file, fileName)) {
+            var textStripper = new PDFTextStripper();
+            textStripper.setStartPage(startPage);
+            textStripper.setEndPage(endPage);
+            var text = textStripper.getText(pdfDocument);
+            job.pagesParsed(endPage - startPage + 1);
+            parsedPages.increment(endPage - startPage + 1);
+            return text;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static PDDocument loadPdf(Path file, String fileName) throws UnreadableDocumentException {
+        try {
+            return Loader.loadPDF(file.toFile());
+        } catch (IOException e) {
+            throw new UnreadableDocumentException(fileName, e);
+        }
+    }
+
+    private void indexRecipes(IngestionJob job, String text) {
+        var recipes = RecipeDocumentParser.parse(text);
+        try {
+            ingredientIndex.addRecipes(recipes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        job.recipesIndexed(recipes.size());
+        indexedRecipes.increment(recipes.size());
+    }
+
+    // Transforms (splits text into chunks based on defined character count) and loads batches of segments into the vector database
+    private CompletableFuture<Void> transformAndLoad(IngestionJob job, String fileName, int pageCount, String text) {
+        if (text.isBlank()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        var metadata = new Metadata()
+                .put("file_name", fileName)
+                .put("page_count", pageCount);
+        var segments = documentSplitter.split(Document.from(text, metadata));
+        job.segmentsCreated(segments.size());
+
+        var batchCompletions = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < segments.size(); i += embeddingBatchSize) {
+            var batch = segments.subList(i, Math.min(i + embeddingBatchSize, segments.size()));
+            batchCompletions.add(CompletableFuture.runAsync(() -> load(job, batch), embeddingExecutor));
+        }
+        return CompletableFuture.allOf(batchCompletions.toArray(CompletableFuture[]::new));
+    }
+
+    private void load(IngestionJob job, List<TextSegment> batch) {
+        // Segments are identified by the hash of their text, so that segments already in the store, or being written by another
+        // batch, are skipped. The batch completes only when the skipped segments are stored.
+        var newSegments = new ArrayList<TextSegment>();
+        var newSegmentHashes = new ArrayList<String>();
+        var newSegmentWrites = new ArrayList<CompletableFuture<Void>>();
+        var pendingSegmentWrites = new ArrayList<CompletableFuture<Void>>();
+        for (var segment : batch) {
+            var segmentHash = EmbeddingCache.hash(segment.text());
+            var segmentWrite = new CompletableFuture<Void>();
+            var pendingSegmentWrite = segmentWrites.putIfAbsent(segmentHash, segmentWrite);
+            if (pendingSegmentWrite != null) {
+                pendingSegmentWrites.add(pendingSegmentWrite);
+            } else {
+                newSegments.add(segment);
+                newSegmentHashes.add(segmentHash);
+                newSegmentWrites.add(segmentWrite);
+            }
+        }
+        job.segmentsSkipped(batch.size() - newSegments.size());
+        skippedSegments.increment(batch.size() - newSegments.size());
+        if (!newSegments.isEmpty()) {
+            store(job, newSegments, newSegmentHashes, newSegmentWrites);
+        }
+        // Own writes are completed before, so that batches waiting for each other's segments can't deadlock
+        CompletableFuture.allOf(pendingSegmentWrites.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private void store(IngestionJob job, List<TextSegment> newSegments, List<String> newSegmentHashes,
+                       List<CompletableFuture<Void>> newSegmentWrites) {
+        try {
+            var embeddings = embed(job, newSegments, newSegmentHashes);
+            // Ids derived from the segment hash make writes idempotent, e.g. for segments already stored in Redis before a restart.
+            // The bulk write is executed by the Redis EmbeddingStore as a single pipeline.
+            var ids = newSegmentHashes.stream()
+                    .map(segmentHash -> UUID.nameUUIDFromBytes(segmentHash.getBytes(StandardCharsets.UTF_8)).toString())
+                    .toList();
+            embeddingStore.addAll(ids, embeddings, newSegments);
+            ingredientIndex.addSegments(ids, newSegments);
+            job.segmentsStored(newSegments.size());
+            storedSegments.increment(newSegments.size());
+            newSegmentWrites.forEach(segmentWrite -> segmentWrite.complete(null));
+        } catch (IOException e) {
+            failed(newSegmentHashes, newSegmentWrites, e);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            failed(newSegmentHashes, newSegmentWrites, e);
+            throw e;
+        }
+    }
+
+    // Failed segments must not be skipped when the document is ingested again
+    private void failed(List<String> segmentHashes, List<CompletableFuture<Void>> writes, Exception error) {
+        for (int i = 0; i < segmentHashes.size(); i++) {
+            segmentWrites.remove(segmentHashes.get(i), writes.get(i));
+            writes.get(i).completeExceptionally(error);
+        }
+    }
+
+    // Only segments without a cached embedding are embedded by the model
+    private List<Embedding> embed(IngestionJob job, List<TextSegment> segments, List<String> segmentHashes) throws IOException {
+        var embeddings = new ArrayList<Embedding>(segments.size());
+        var uncachedSegments = new ArrayList<TextSegment>();
+        var uncachedSegmentHashes = new ArrayList<String>();
+        var uncachedIndexes = new ArrayList<Integer>();
+        for (int i = 0; i < segments.size(); i++) {
+            var cachedEmbedding = embeddingCache.get(segmentHashes.get(i));
+            embeddings.add(cachedEmbedding.orElse(null));
+            if (cachedEmbedding.isEmpty()) {
+                uncachedSegments.add(segments.get(i));
+                uncachedSegmentHashes.add(segmentHashes.get(i));
+                uncachedIndexes.add(i);
+            }
+        }
+        job.embeddingsCached(segments.size() - uncachedSegments.size());
+        cachedEmbeddings.increment(segments.size() - uncachedSegments.size());
+        modelEmbeddings.increment(uncachedSegments.size());
+
+        if (!uncachedSegments.isEmpty()) {
+            var newEmbeddings = embeddingModelBulkhead.call(() -> embeddingModel.embedAll(uncachedSegments)).content();
+            embeddingCache.putAll(uncachedSegmentHashes, newEmbeddings);
+            for (int i = 0; i < newEmbeddings.size(); i++) {
+                embeddings.set(uncachedIndexes.get(i), newEmbeddings.get(i));
+            }
+        }
+        return embeddings;
+    }
+
+    private static void deleteFiles(List<Path> files) {
+        for (var file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Deleting temporary file {} failed: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobExecutor.shutdownNow();
+        parserExecutor.shutdownNow();
+        embeddingExecutor.shutdownNow();
+    }
+
+    // The document is no valid PDF, e.g. a corrupt or encrypted file, so ingesting it again fails as well
+    static class UnreadableDocumentException extends IOException {
+
+        UnreadableDocumentException(String fileName, IOException cause) {
+            super("Document %s can't be read: %s".formatted(fileName, cause.getMessage()), cause);
+        }
+    }
+}
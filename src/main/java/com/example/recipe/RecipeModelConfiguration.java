@@ -0,0 +1,391 @@
+package com.example.recipe;
+
+import dev.langchain4j.data.image.Image;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.request.ResponseFormat;
+import dev.langchain4j.model.chat.request.ResponseFormatType;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.image.ImageModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.service.output.JsonSchemas;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+@Configuration
+class RecipeModelConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(RecipeModelConfiguration.class);
+
+    // One bulkhead per model type, as the model backends have different capacities.
+    // The chat calls are routed across providers, so each provider has its own chat bulkhead, which limits the calls of each attempt.
+    // Chat and streaming chat calls of a provider share its bulkhead, as they are served by the same backend.
+    @Bean
+    ModelBulkheads chatModelBulkheads(MeterRegistry meterRegistry, ObservationRegistry observationRegistry,
+                                      @Value("${app.bulkhead.chat.max-concurrent-calls}") int maxConcurrentCalls,
+                                      @Value("${app.bulkhead.chat.max-queued-calls}") int maxQueuedCalls,
+                                      @Value("${app.bulkhead.chat.timeout}") Duration timeout) {
+        return new ModelBulkheads("chat", maxConcurrentCalls, maxQueuedCalls, timeout, meterRegistry, observationRegistry);
+    }
+
+    @Bean
+    ModelBulkhead embeddingModelBulkhead(MeterRegistry meterRegistry, ObservationRegistry observationRegistry,
+                                         @Value("${app.bulkhead.embedding.max-concurrent-calls}") int maxConcurrentCalls,
+                                         @Value("${app.bulkhead.embedding.max-queued-calls}") int maxQueuedCalls,
+                                         @Value("${app.bulkhead.embedding.timeout}") Duration timeout) {
+        return new ModelBulkhead("embedding", "all", maxConcurrentCalls, maxQueuedCalls, timeout, meterRegistry, observationRegistry);
+    }
+
+    @Bean
+    ModelBulkhead imageModelBulkhead(MeterRegistry meterRegistry, ObservationRegistry observationRegistry,
+                                     @Value("${app.bulkhead.image.max-concurrent-calls}") int maxConcurrentCalls,
+                                     @Value("${app.bulkhead.image.max-queued-calls}") int maxQueuedCalls,
+                                     @Value("${app.bulkhead.image.timeout}") Duration timeout) {
+        return new ModelBulkhead("image", "all", maxConcurrentCalls, maxQueuedCalls, timeout, meterRegistry, observationRegistry);
+    }
+
+    // LangChain4j auto-configures ChatModel, but the AiServices expect it to be named "chatModel"
+    // This bean routes the calls to the auto-configured ChatModels of all active provider profiles, e.g. "ollama,openai",
+    // limited by the chat bulkhead of each provider. Only failed calls and empty responses fall back to the next provider, as malformed
+    // recipe JSON is repaired by the RecipeResponseParser and says nothing about the health of the provider.
+    // Providers with native structured output get the JSON schema of the Recipe.
+    @Primary
+    @Bean("chatModel")
+    ChatModel chatModel(Map<String, ChatModel> chatModels, ModelProviders modelProviders, ModelBulkheads chatModelBulkheads,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.routing.hedging.chat}") boolean hedging,
+                        @Value("${app.routing.hedging.latency-percentile}") double latencyPercentile,
+                        @Value("${app.routing.hedging.initial-delay}") Duration initialHedgeDelay,
+                        @Value("${app.routing.hedging.min-delay}") Duration minHedgeDelay) {
+        var routes = modelProviders.routes("chat", chatModels, "ChatModel").stream()
+                .map(route -> new ModelRouter.Route<ChatModel>(route.provider(), new BulkheadChatModel(
+                        new RecipeJsonSchemaChatModel(route.model()), chatModelBulkheads.forProvider(route.provider())), route.health()))
+                .toList();
+        var router = new ModelRouter<>("chat", routes, hedging, latencyPercentile, initialHedgeDelay, minHedgeDelay, meterRegistry);
+        Predicate<ChatResponse> isValid = response -> response != null && response.aiMessage() != null
+                && (response.aiMessage().hasToolExecutionRequests() || response.aiMessage().text() != null);
+        return new RoutingChatModel(router, isValid);
+    }
+
+    // Same for the auto-configured StreamingChatModels used by the streaming AiServices.
+    // Streamed responses can't be hedged, as partial responses are already sent to the client, but fall back on early errors.
+    @Primary
+    @Bean("streamingChatModel")
+    StreamingChatModel streamingChatModel(Map<String, StreamingChatModel> streamingChatModels, ModelProviders modelProviders,
+                                          ModelBulkheads chatModelBulkheads, MeterRegistry meterRegistry) {
+        var routes = modelProviders.routes("chat", streamingChatModels, "StreamingChatModel").stream()
+                .map(route -> new ModelRouter.Route<StreamingChatModel>(route.provider(),
+                        new BulkheadStreamingChatModel(route.model(), chatModelBulkheads.forProvider(route.provider())), route.health()))
+                .toList();
+        var router = new ModelRouter<>("chat", routes, false, 1, Duration.ZERO, Duration.ZERO, meterRegistry);
+        return new RoutingStreamingChatModel(router);
+    }
+
+    // Embeddings of different models aren't comparable, so the embedding model of the most preferred provider is used
+    @Primary
+    @Bean("embeddingModel")
+    EmbeddingModel embeddingModel(Map<String, EmbeddingModel> embeddingModels, ModelProviders modelProviders) {
+        var routes = modelProviders.routes("embedding", embeddingModels, "EmbeddingModel");
+        if (routes.isEmpty()) {
+            throw new IllegalStateException("No embedding model provider configured");
+        }
+        return routes.getFirst().model();
+    }
+
+    // Image generation isn't on the critical path of recipe requests, therefore it isn't hedged by default.
+    // No ImageModel is available if none of the active providers supports image generation, e.g. Ollama.
+    @Primary
+    @Bean("imageModel")
+    ImageModel imageModel(Map<String, ImageModel> imageModels, ModelProviders modelProviders, MeterRegistry meterRegistry,
+                          @Value("${app.routing.hedging.image}") boolean hedging,
+                          @Value("${app.routing.hedging.latency-percentile}") double latencyPercentile,
+                          @Value("${app.routing.hedging.initial-delay}") Duration initialHedgeDelay,
+                          @Value("${app.routing.hedging.min-delay}") Duration minHedgeDelay) {
+        var routes = modelProviders.routes("image", imageModels, "ImageModel");
+        if (routes.isEmpty()) {
+            return null;
+        }
+        return new RoutingImageModel(new ModelRouter<>("image", routes, hedging, latencyPercentile, initialHedgeDelay,
+                minHedgeDelay, meterRegistry));
+    }
+
+    // Resolved once at startup instead of by reflection on every request of the UI
+    @Bean
+    AiModelMetadata aiModelMetadata(ChatModel chatModel, Optional<EmbeddingModel> embeddingModel, Optional<ImageModel> imageModel) {
+        return AiModelMetadata.resolve(chatModel, embeddingModel, imageModel);
+    }
+
+    // Models wrapping the auto-configured models of the AI providers, e.g. to show their names in the UI
+    interface DelegatingModel {
+        List<?> delegates();
+    }
+
+    record RoutingChatModel(ModelRouter<ChatModel> router, Predicate<ChatResponse> isValid) implements ChatModel, DelegatingModel {
+
+        @Override
+        public ChatResponse chat(ChatRequest chatRequest) {
+            return router.call(model -> model.chat(chatRequest), isValid);
+        }
+
+        // Only capabilities supported by all providers, as any of them may answer
+        @Override
+        public Set<Capability> supportedCapabilities() {
+            var capabilities = EnumSet.allOf(Capability.class);
+            router.routes().forEach(route -> capabilities.retainAll(route.model().supportedCapabilities()));
+            return capabilities;
+        }
+
+        @Override
+        public List<?> delegates() {
+            return router.routes().stream().map(ModelRouter.Route::model).toList();
+        }
+    }
+
+    // Falls back to the next provider if the stream fails before the first partial response
+    record RoutingStreamingChatModel(ModelRouter<StreamingChatModel> router) implements StreamingChatModel, DelegatingModel {
+
+        @Override
+        public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            chat(chatRequest, handler, router.candidates(), 0, RecipeStreamCancellation.current());
+        }
+
+        private void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler, List<ModelRouter.Route<StreamingChatModel>> candidates,
+                          int index, Optional<RecipeStreamCancellation> cancellation) {
+            var route = candidates.get(index);
+            var startTime = System.nanoTime();
+            var started = new AtomicBoolean();
+            var routeHandler = new StreamingChatResponseHandler() {
+                @Override
+                public void onPartialResponse(String partialResponse) {
+                    started.set(true);
+                    handler.onPartialResponse(partialResponse);
+                }
+
+                @Override
+                public void onCompleteResponse(ChatResponse completeResponse) {
+                    router.record(route, true, startTime);
+                    router.release(candidates.subList(index + 1, candidates.size()));
+                    handler.onCompleteResponse(completeResponse);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    router.recordFailure(route, error, startTime);
+                    // A cancelled stream doesn't fall back, as nobody waits for its response
+                    var cancelled = cancellation.map(RecipeStreamCancellation::isCancelled).orElse(false);
+                    if (!started.get() && !cancelled && index + 1 < candidates.size()) {
+                        log.info("Streaming chat model call to {} failed, falling back to {}", route.provider(),
+                                candidates.get(index + 1).provider());
+                        // The error may be reported on a thread of the failed stream, which doesn't know the cancellation
+                        Runnable fallback = () -> chat(chatRequest, handler, candidates, index + 1, cancellation);
+                        cancellation.ifPresentOrElse(streamCancellation -> streamCancellation.runBound(fallback), fallback);
+                    } else {
+                        router.release(candidates.subList(index + 1, candidates.size()));
+                        handler.onError(error);
+                    }
+                }
+            };
+            try {
+                route.model().chat(chatRequest, routeHandler);
+            } catch (RuntimeException e) {
+                routeHandler.onError(e);
+            }
+        }
+
+        @Override
+        public Set<Capability> supportedCapabilities() {
+            var capabilities = EnumSet.allOf(Capability.class);
+            router.routes().forEach(route -> capabilities.retainAll(route.model().supportedCapabilities()));
+            return capabilities;
+        }
+
+        @Override
+        public List<?> delegates() {
+            return router.routes().stream().map(ModelRouter.Route::model).toList();
+        }
+    }
+
+    record RoutingImageModel(ModelRouter<ImageModel> router) implements ImageModel, DelegatingModel {
+
+        @Override
+        public Response<Image> generate(String prompt) {
+            return router.call(model -> model.generate(prompt), response -> response != null && response.content() != null);
+        }
+
+        @Override
+        public List<?> delegates() {
+            return router.routes().stream().map(ModelRouter.Route::model).toList();
+        }
+    }
+
+    // The recipe AiServices return the raw response, so that malformed JSON can be repaired, and LangChain4j therefore
+    // doesn't request structured output. This adds the JSON schema of the Recipe, as a Recipe return type would, for providers
+    // that support it. Other providers rely on the JSON format described in the system messages, which LangChain4j would
+    // otherwise append as format instructions to the user message.
+    // Requests with tools are unchanged, as a forced JSON response would prevent tool calls, e.g. with Ollama.
+    record RecipeJsonSchemaChatModel(ChatModel delegate) implements ChatModel, DelegatingModel {
+
+        private static final ResponseFormat RECIPE_RESPONSE_FORMAT = ResponseFormat.builder()
+                .type(ResponseFormatType.JSON)
+                .jsonSchema(JsonSchemas.jsonSchemaFrom(Recipe.class).orElseThrow())
+                .build();
+
+        @Override
+        public List<?> delegates() {
+            return List.of(delegate);
+        }
+
+        @Override
+        public ChatResponse chat(ChatRequest chatRequest) {
+            var toolSpecifications = chatRequest.toolSpecifications();
+            if (chatRequest.parameters().responseFormat() != null || (toolSpecifications != null && !toolSpecifications.isEmpty())
+                    || !delegate.supportedCapabilities().contains(Capability.RESPONSE_FORMAT_JSON_SCHEMA)) {
+                return delegate.chat(chatRequest);
+            }
+            return delegate.chat(ChatRequest.builder()
+                    .messages(chatRequest.messages())
+                    .parameters(chatRequest.parameters().overrideWith(ChatRequestParameters.builder()
+                            .responseFormat(RECIPE_RESPONSE_FORMAT)
+                            .build()))
+                    .build());
+        }
+
+        @Override
+        public ChatRequestParameters defaultRequestParameters() {
+            return delegate.defaultRequestParameters();
+        }
+
+        @Override
+        public Set<Capability> supportedCapabilities() {
+            return delegate.supportedCapabilities();
+        }
+
+        @Override
+        public ModelProvider provider() {
+            return delegate.provider();
+        }
+    }
+
+    record BulkheadChatModel(ChatModel delegate, ModelBulkhead bulkhead) implements ChatModel, DelegatingModel {
+
+        @Override
+        public List<?> delegates() {
+            return List.of(delegate);
+        }
+
+        @Override
+        public ChatResponse chat(ChatRequest chatRequest) {
+            return bulkhead.call(() -> delegate.chat(chatRequest));
+        }
+
+        @Override
+        public ChatRequestParameters defaultRequestParameters() {
+            return delegate.defaultRequestParameters();
+        }
+
+        @Override
+        public Set<Capability> supportedCapabilities() {
+            return delegate.supportedCapabilities();
+        }
+
+        @Override
+        public ModelProvider provider() {
+            return delegate.provider();
+        }
+    }
+
+    // The permit is held until the response is complete, not only until the streaming request is sent.
+    // LangChain4j can't stop a started stream, so the permit of a cancelled stream is held as well until the backend finished
+    // generating. Only the partial responses of a cancelled stream are dropped, its complete response or error is still passed on,
+    // e.g. to cache the recipe for the requests waiting for it.
+    record BulkheadStreamingChatModel(StreamingChatModel delegate, ModelBulkhead bulkhead) implements StreamingChatModel, DelegatingModel {
+
+        @Override
+        public List<?> delegates() {
+            return List.of(delegate);
+        }
+
+        @Override
+        public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            var cancellation = RecipeStreamCancellation.current();
+            bulkhead.acquire();
+            var released = new AtomicBoolean();
+            Runnable release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    bulkhead.release();
+                }
+            };
+            if (isCancelled(cancellation)) {
+                release.run();
+                handler.onError(new CancellationException("Recipe stream cancelled before the model call"));
+                return;
+            }
+            try {
+                delegate.chat(chatRequest, new StreamingChatResponseHandler() {
+                    @Override
+                    public void onPartialResponse(String partialResponse) {
+                        if (!isCancelled(cancellation)) {
+                            handler.onPartialResponse(partialResponse);
+                        }
+                    }
+
+                    @Override
+                    public void onCompleteResponse(ChatResponse completeResponse) {
+                        release.run();
+                        handler.onCompleteResponse(completeResponse);
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        release.run();
+                        handler.onError(error);
+                    }
+                });
+            } catch (RuntimeException e) {
+                release.run();
+                throw e;
+            }
+        }
+
+        private static boolean isCancelled(Optional<RecipeStreamCancellation> cancellation) {
+            return cancellation.map(RecipeStreamCancellation::isCancelled).orElse(false);
+        }
+
+        @Override
+        public ChatRequestParameters defaultRequestParameters() {
+            return delegate.defaultRequestParameters();
+        }
+
+        @Override
+        public Set<Capability> supportedCapabilities() {
+            return delegate.supportedCapabilities();
+        }
+
+        @Override
+        public ModelProvider provider() {
+            return delegate.provider();
+        }
+    }
+}
@@ -1,28 +1,150 @@
 package com.example.recipe;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/v1/recipes")
 class RecipeResource {
 
-    private final RecipeService recipeService;
+    private static final Logger log = LoggerFactory.getLogger(RecipeResource.class);
+    private static final Duration STREAM_TIMEOUT = Duration.ofMinutes(5);
 
-    RecipeResource(RecipeService recipeService) {
-        this.recipeService = recipeService;
+    private final RecipeStreamService recipeStreamService;
+    private final RecipeIngestionService recipeIngestionService;
+    private final RecipeBatchService recipeBatchService;
+    private final ObjectMapper objectMapper;
+
+    RecipeResource(RecipeStreamService recipeStreamService, @Lazy RecipeIngestionService recipeIngestionService,
+                   RecipeBatchService recipeBatchService, ObjectMapper objectMapper) {
+        this.recipeStreamService = recipeStreamService;
+        this.recipeIngestionService = recipeIngestionService;
+        this.recipeBatchService = recipeBatchService;
+        this.objectMapper = objectMapper;
     }
 
+    // Ingests a single document and waits for the ingestion to finish
     @PostMapping("upload")
     ResponseEntity<Void> addRecipeDocumentsForRag(@RequestParam("file") MultipartFile file) throws IOException {
-        recipeService.addRecipeDocumentForRag(file.getResource());
+        log.info("Add recipe document {} for rag", file.getOriginalFilename());
+        try {
+            recipeIngestionService.submit(List.of(file.getResource())).completion().join();
+        } catch (CompletionException e) {
+            rethrowIngestionFailure(e.getCause());
+        }
         return ResponseEntity.noContent().build();
     }
 
+    // Documents that can't be read are rejected with the reason, other failures are thrown unwrapped
+    private static void rethrowIngestionFailure(Throwable error) throws IOException {
+        var cause = error instanceof UncheckedIOException uncheckedIOException ? uncheckedIOException.getCause() : error;
+        switch (cause) {
+            case RecipeIngestionService.UnreadableDocumentException e ->
+                    throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage(), e);
+            case IOException e -> throw e;
+            case RuntimeException e -> throw e;
+            case Error e -> throw e;
+            default -> throw new IllegalStateException(cause);
+        }
+    }
+
+    // Starts the ingestion of one or many documents in the background and returns the job to track its progress
+    @PostMapping("ingestion-jobs")
+    ResponseEntity<IngestionJob.Status> addRecipeDocumentsForRagAsync(@RequestParam("files") List<MultipartFile> files) throws IOException {
+        var job = recipeIngestionService.submit(files.stream().map(MultipartFile::getResource).toList());
+        var jobLocation = ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(job.id()).toUri();
+        return ResponseEntity.accepted().location(jobLocation).body(job.status());
+    }
+
+    @GetMapping("ingestion-jobs/{id}")
+    IngestionJob.Status fetchIngestionJobStatus(@PathVariable String id) {
+        return recipeIngestionService.findJob(id)
+                .map(IngestionJob::status)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown ingestion job " + id));
+    }
+
+    // Sends the recipe fields as server-sent events as soon as they are generated, followed by the complete recipe.
+    // The stream is cancelled when the emitter completes, times out or fails, e.g. because the client disconnected.
+    @GetMapping(path = "stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    SseEmitter streamRecipeFor(@RequestHeader(name = FridgeResource.USER_ID_HEADER, defaultValue = FridgeInventory.DEFAULT_USER) String userId,
+                               @RequestParam List<String> ingredients,
+                               @RequestParam(defaultValue = "false") boolean preferAvailableIngredients,
+                               @RequestParam(defaultValue = "false") boolean preferOwnRecipes) throws IOException {
+        var emitter = new SseEmitter(STREAM_TIMEOUT.toMillis());
+        var cancellation = new RecipeStreamCancellation();
+        emitter.onCompletion(cancellation::cancel);
+        emitter.onTimeout(cancellation::cancel);
+        emitter.onError(error -> cancellation.cancel());
+        recipeStreamService.streamRecipeFor(userId, ingredients, preferAvailableIngredients, preferOwnRecipes,
+                new SseRecipeStreamListener(emitter, cancellation), cancellation);
+        return emitter;
+    }
+
+    // Generates the recipes of many ingredient lists in parallel, and streams each recipe as a line of NDJSON as soon as it's complete
+    @PostMapping(path = "batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<StreamingResponseBody> fetchRecipesFor(@RequestHeader(name = FridgeResource.USER_ID_HEADER, defaultValue = FridgeInventory.DEFAULT_USER) String userId,
+                                                          @RequestBody RecipeBatchService.BatchRecipeRequest request) {
+        recipeBatchService.validate(request);
+        StreamingResponseBody body = outputStream -> recipeBatchService.fetchRecipesFor(userId, request, result -> {
+            outputStream.write(objectMapper.writeValueAsBytes(result));
+            outputStream.write('\n');
+            outputStream.flush();
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private record SseRecipeStreamListener(SseEmitter emitter, RecipeStreamCancellation cancellation) implements RecipeStreamService.RecipeStreamListener {
+
+        @Override
+        public void onField(String field, String value) {
+            send(SseEmitter.event().name(field).data(value));
+        }
+
+        @Override
+        public void onRecipe(Recipe recipe) {
+            send(SseEmitter.event().name("recipe").data(recipe, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            log.warn("Streaming recipe failed: {}", error.getMessage());
+            send(SseEmitter.event().name("error").data("Recipe generation failed"));
+            emitter.complete();
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) {
+            try {
+                emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                // Client disconnected or emitter already completed
+                log.debug("Sending recipe stream event failed: {}", e.getMessage());
+                cancellation.cancel();
+            }
+        }
+    }
 }
@@ -0,0 +1,142 @@
+package com.example.recipe;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import dev.langchain4j.model.chat.ChatModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.StreamSupport;
+
+// Tolerant structured output for Recipe responses of the model.
+// Common defects like markdown code fences, text around the JSON object, cut off JSON, trailing commas and ingredients
+// as objects instead of strings are repaired locally. Only if that fails, the model is asked to fix the JSON,
+// which is much faster and cheaper than generating the recipe again.
+@Component
+class RecipeResponseParser {
+
+    private static final Logger log = LoggerFactory.getLogger(RecipeResponseParser.class);
+    // Parts of ingredient objects, which come before e.g. the name of the ingredient
+    private static final List<String> QUANTITY_FIELDS = List.of("quantity", "amount", "unit");
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader lenientReader;
+    private final ChatModel chatModel;
+    private final PromptRegistry promptRegistry;
+
+    private final Counter validResponses;
+    private final Counter repairedResponses;
+    private final Counter fixedByModelResponses;
+    private final Counter invalidResponses;
+
+    RecipeResponseParser(ObjectMapper objectMapper, ChatModel chatModel, PromptRegistry promptRegistry, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.lenientReader = objectMapper.reader()
+                .with(JsonReadFeature.ALLOW_TRAILING_COMMA.mappedFeature())
+                .with(JsonReadFeature.ALLOW_SINGLE_QUOTES.mappedFeature())
+                .with(JsonReadFeature.ALLOW_UNQUOTED_FIELD_NAMES.mappedFeature())
+                .with(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS.mappedFeature());
+        this.chatModel = chatModel;
+        this.promptRegistry = promptRegistry;
+        this.validResponses = meterRegistry.counter("recipe.responses", "outcome", "valid");
+        this.repairedResponses = meterRegistry.counter("recipe.responses", "outcome", "repaired");
+        this.fixedByModelResponses = meterRegistry.counter("recipe.responses", "outcome", "fixed-by-model");
+        this.invalidResponses = meterRegistry.counter("recipe.responses", "outcome", "invalid");
+    }
+
+    Recipe parse(String response) throws IOException {
+        try {
+            var recipe = objectMapper.readValue(response, Recipe.class);
+            if (isComplete(recipe)) {
+                validResponses.increment();
+                return recipe;
+            }
+        } catch (JsonProcessingException e) {
+            log.debug("Recipe response is no valid JSON: {}", e.getOriginalMessage());
+        }
+
+        var repairedRecipe = repair(response);
+        if (repairedRecipe.isPresent()) {
+            repairedResponses.increment();
+            return repairedRecipe.get();
+        }
+
+        // Targeted follow-up with the broken response only, instead of the whole conversation with tools and RAG
+        log.info("Repairing recipe response failed, asking the model to fix the JSON");
+        var fixJsonPrompt = promptRegistry.template("fix-json-response").apply(Map.of("response", response));
+        var fixedRecipe = repair(chatModel.chat(fixJsonPrompt.text()));
+        if (fixedRecipe.isPresent()) {
+            fixedByModelResponses.increment();
+            return fixedRecipe.get();
+        }
+        invalidResponses.increment();
+        throw new IOException("Model response is no valid recipe: " + response);
+    }
+
+    private Optional<Recipe> repair(String response) {
+        var parser = new RecipeStreamParser((field, value) -> {
+        });
+        parser.append(response);
+        try {
+            var recipe = toRecipe(lenientReader.readTree(parser.repairedJson()));
+            return isComplete(recipe) ? Optional.of(recipe) : Optional.empty();
+        } catch (JsonProcessingException e) {
+            log.debug("Repaired recipe response is no valid JSON: {}", e.getOriginalMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static boolean isComplete(Recipe recipe) {
+        return recipe != null && recipe.name() != null && !recipe.name().isBlank() && recipe.ingredients() != null
+                && !recipe.ingredients().isEmpty() && recipe.instructions() != null && !recipe.instructions().isEmpty();
+    }
+
+    private static Recipe toRecipe(JsonNode node) {
+        if (node == null || !node.isObject()) {
+            return null;
+        }
+        return new Recipe(text(node.get("name")), text(node.get("description")), list(node.get("ingredients")),
+                list(node.get("instructions")), text(node.get("imageUrl")));
+    }
+
+    private static List<String> list(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return List.of();
+        }
+        var elements = node.isArray() ? StreamSupport.stream(node.spliterator(), false).toList() : List.of(node);
+        return elements.stream().map(RecipeResponseParser::text).filter(text -> !text.isBlank()).toList();
+    }
+
+    // Objects like {"name": "onions", "quantity": "2"} are joined to "2 onions"
+    private static String text(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return "";
+        }
+        if (node.isValueNode()) {
+            return node.asText().strip();
+        }
+        var parts = new ArrayList<String>();
+        if (node.isObject()) {
+            QUANTITY_FIELDS.forEach(field -> parts.add(text(node.get(field))));
+            node.fields().forEachRemaining(field -> {
+                if (!QUANTITY_FIELDS.contains(field.getKey())) {
+                    parts.add(text(field.getValue()));
+                }
+            });
+        } else {
+            node.forEach(element -> parts.add(text(element)));
+        }
+        return String.join(" ", parts.stream().filter(part -> !part.isBlank()).toList());
+    }
+}
@@ -1,23 +1,21 @@
 package com.example.recipe;
 
 import dev.langchain4j.agent.tool.Tool;
-import dev.langchain4j.data.document.parser.apache.pdfbox.ApachePdfBoxDocumentParser;
 import dev.langchain4j.model.chat.ChatModel;
-import dev.langchain4j.model.image.ImageModel;
-import dev.langchain4j.model.input.PromptTemplate;
 import dev.langchain4j.service.AiServices;
-import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.function.Supplier;
 
 @Service
 class RecipeService {
@@ -27,101 +25,170 @@ class RecipeService {
     private final RecipeAiServices.WithTools recipeAiServiceWithTools;
     private final RecipeAiServices.WithRag recipeAiServiceWithRag;
     private final RecipeAiServices.WithToolsAndRag recipeAiServiceWithToolsAndRag;
-    private final Optional<ImageModel> imageModel;
-    private final EmbeddingStoreIngestor embeddingStoreIngestor;
-	private final ChatModel chatModel;
-
-    @Value("classpath:/prompts/recipe-for-ingredients")
-    private Resource recipeForIngredientsPromptResource;
-
-    @Value("classpath:/prompts/fix-json-response")
-    private Resource fixJsonResponsePromptResource;
-
-	@Value("classpath:/prompts/image-for-recipe")
-    private Resource imageForRecipePromptResource;
-
-    @Value("${app.available-ingredients-in-fridge}")
-    private List<String> availableIngredientsInFridge;
+    private final RecipeAiServices.WithRagAndPrefetchedTools recipeAiServiceWithRagAndPrefetchedTools;
+    private final RecipeAiServices.Standard recipeAiService;
+    private final RecipeImageService recipeImageService;
+    private final PromptRegistry promptRegistry;
+    private final RecipeCache recipeCache;
+    private final InFlightRecipeRequests inFlightRecipeRequests;
+    private final IngredientIndex ingredientIndex;
+    private final RecipeResponseParser recipeResponseParser;
+    private final FridgeInventory fridgeInventory;
+    private final boolean prefetchTools;
+    private final ObservationRegistry observationRegistry;
+    private final Counter prefetchedToolExecutions;
+    private final Counter modelToolExecutions;
+    // Available ingredients of the request the model executes the tool for, as the tool itself doesn't know the user
+    private final ThreadLocal<List<String>> availableIngredientsOfRequest = new ThreadLocal<>();
 
     // Constructor injection for autoconfigured AI services
     RecipeService(ChatModel chatModel, @Lazy RecipeAiServices.WithTools recipeAiServiceWithTools,
                   @Lazy RecipeAiServices.WithRag recipeAiServiceWithRag, @Lazy RecipeAiServices.WithToolsAndRag recipeAiServiceWithToolsAndRag,
-                  Optional<ImageModel> imageModel, EmbeddingStoreIngestor embeddingStoreIngestor) {
-		this.chatModel = chatModel;
+                  @Lazy RecipeAiServices.WithRagAndPrefetchedTools recipeAiServiceWithRagAndPrefetchedTools,
+                  RecipeImageService recipeImageService, RecipeCache recipeCache,
+                  InFlightRecipeRequests inFlightRecipeRequests, @Lazy IngredientIndex ingredientIndex, PromptRegistry promptRegistry,
+                  RecipeResponseParser recipeResponseParser, FridgeInventory fridgeInventory,
+                  ObservationRegistry observationRegistry, MeterRegistry meterRegistry,
+                  @Value("${app.tools.prefetch}") boolean prefetchTools) {
+        // Builder for high-abstraction API, the proxy is built once as its construction is reflection-heavy.
+        // The system prompt is resolved per request, so that changes of reloaded prompts apply.
+        this.recipeAiService = AiServices.builder(RecipeAiServices.Standard.class)
+                .chatModel(chatModel)
+                .systemMessageProvider(chatMemoryId -> promptRegistry.text("json-recipe-response"))
+                .build();
         this.recipeAiServiceWithTools = recipeAiServiceWithTools;
         this.recipeAiServiceWithRag = recipeAiServiceWithRag;
         this.recipeAiServiceWithToolsAndRag = recipeAiServiceWithToolsAndRag;
-        this.imageModel = imageModel;
-        this.embeddingStoreIngestor = embeddingStoreIngestor;
+        this.recipeAiServiceWithRagAndPrefetchedTools = recipeAiServiceWithRagAndPrefetchedTools;
+        this.recipeImageService = recipeImageService;
+        this.recipeCache = recipeCache;
+        this.inFlightRecipeRequests = inFlightRecipeRequests;
+        this.ingredientIndex = ingredientIndex;
+        this.promptRegistry = promptRegistry;
+        this.recipeResponseParser = recipeResponseParser;
+        this.fridgeInventory = fridgeInventory;
+        this.prefetchTools = prefetchTools;
+        this.observationRegistry = observationRegistry;
+        this.prefetchedToolExecutions = meterRegistry.counter("recipe.tool-executions", "tool", "fetchIngredientsAvailableAtHome", "execution", "prefetched");
+        this.modelToolExecutions = meterRegistry.counter("recipe.tool-executions", "tool", "fetchIngredientsAvailableAtHome", "execution", "model");
 	}
 
-    // ETL pipeline orchestrating the flow from raw data sources to a structured vector store
-    void addRecipeDocumentForRag(Resource pdfResource) throws IOException {
-        log.info("Add recipe document {} for rag", pdfResource.getFilename());
+    Recipe fetchRecipeFor(String userId, List<String> ingredients, boolean preferAvailableIngredients, boolean preferOwnRecipes) throws IOException {
+        return fetchRecipeFor(userId, ingredients, preferAvailableIngredients, preferOwnRecipes, true);
+    }
 
-        // Extract: Parses PDF document
-        var documentParser = new ApachePdfBoxDocumentParser();
-        var document = documentParser.parse(pdfResource.getInputStream());
-        // Transforms(Splits text into chunks based on defined character count) and loads data into vector database
-        embeddingStoreIngestor.ingest(document);
+    Recipe fetchRecipeFor(String userId, List<String> ingredients, boolean preferAvailableIngredients, boolean preferOwnRecipes,
+                          boolean generateImage) throws IOException {
+        var availableIngredients = preferAvailableIngredients ? fridgeInventory.ingredients(userId) : List.<String>of();
+        var cacheKey = RecipeCacheKey.of(ingredients, preferAvailableIngredients, preferOwnRecipes, availableIngredients);
+        // Latency per mode as timer, and as span containing the spans of the model calls
+        var observation = Observation.createNotStarted("recipe.requests", observationRegistry)
+                .lowCardinalityKeyValue("mode", cacheKey.mode())
+                .lowCardinalityKeyValue("streaming", "false")
+                .lowCardinalityKeyValue("cache", "miss")
+                .start();
+        try (var scope = observation.openScope()) {
+            var recipe = fetchRecipeFor(cacheKey, ingredients, availableIngredients, observation);
+            // Image generation is not on the critical path, the recipe references a pending image handle instead
+            return generateImage ? recipeImageService.withImage(recipe) : recipe;
+        } catch (IOException | RuntimeException e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
     }
 
-    Recipe fetchRecipeFor(List<String> ingredients, boolean preferAvailableIngredients, boolean preferOwnRecipes) throws IOException {
-        Recipe recipe;
+    private Recipe fetchRecipeFor(RecipeCacheKey cacheKey, List<String> ingredients, List<String> availableIngredients,
+                                  Observation observation) throws IOException {
+        // Popular ingredient combinations are answered from the cache without any LLM or image model call
+        var cachedRecipe = recipeCache.get(cacheKey);
+        if (cachedRecipe.isPresent()) {
+            log.info("Recipe for ingredients '{}' served from cache", cacheKey.asString());
+            observation.lowCardinalityKeyValue("cache", "hit");
+            return cachedRecipe.get();
+        }
+
+        // Concurrent callers with the same canonical ingredients and mode flags share one pending computation
+        return inFlightRecipeRequests.computeIfAbsent(cacheKey, () -> {
+            var generatedRecipe = generateRecipeFor(ingredients, cacheKey.preferAvailableIngredients(), cacheKey.preferOwnRecipes(),
+                    availableIngredients);
+            recipeCache.put(cacheKey, generatedRecipe);
+            return generatedRecipe;
+        });
+    }
+
+    private Recipe generateRecipeFor(List<String> ingredients, boolean preferAvailableIngredients, boolean preferOwnRecipes,
+                                     List<String> availableIngredients) throws IOException {
+        // The prompt asks the model to return an uploaded recipe with the ingredients unchanged, which the index does without any model call
+        if (preferOwnRecipes) {
+            var ownRecipe = ingredientIndex.findRecipeCovering(ingredients);
+            if (ownRecipe.isPresent()) {
+                log.info("Recipe for ingredients '{}' served from uploaded recipe '{}'", ingredients, ownRecipe.get().name());
+                return ownRecipe.get();
+            }
+        }
+
+        String response;
         var ingredientsAsString = String.join(",", ingredients);
+        var availableIngredientsAsString = String.join(",", availableIngredients);
         if (!preferAvailableIngredients && !preferOwnRecipes) {
-            recipe = fetchRecipeFor(ingredientsAsString);
+            response = fetchRecipeFor(ingredientsAsString);
         } else if (preferAvailableIngredients && !preferOwnRecipes) {
-            recipe = recipeAiServiceWithTools.find(ingredientsAsString);
+            response = prefetchTools ? fetchRecipeFor(ingredientsAsString, availableIngredientsAsString)
+                    : withAvailableIngredients(availableIngredients, () -> recipeAiServiceWithTools.find(ingredientsAsString));
         } else if (!preferAvailableIngredients && preferOwnRecipes) {
-            recipe = recipeAiServiceWithRag.find(ingredientsAsString);
+            response = recipeAiServiceWithRag.find(ingredientsAsString);
         } else {
-            recipe = recipeAiServiceWithToolsAndRag.find(ingredientsAsString);
+            response = prefetchTools ? fetchRecipeWithRagFor(ingredientsAsString, availableIngredientsAsString)
+                    : withAvailableIngredients(availableIngredients, () -> recipeAiServiceWithToolsAndRag.find(ingredientsAsString));
         }
 
-        if (imageModel.isPresent()) {
-            log.info("Image generation for recipe '{}' started", recipe.name());
-            try {
-                // Only low-level API available for image models
-                var imagePromptTemplate = PromptTemplate.from(imageForRecipePromptResource.getContentAsString(StandardCharsets.UTF_8))
-                            .apply(Map.of("recipe", recipe.name()));
-                var generatedImage = imageModel.get().generate(imagePromptTemplate.text()).content();
-                return new Recipe(recipe, generatedImage.url().toString());
-            } catch (Exception e) {
-                log.warn("Image generation failed for recipe '{}': {}. Returning recipe without image.", recipe.name(), e.getMessage());
-                // Return recipe without image if image generation fails
-                return recipe;
-            }
-        }
-
-        return recipe;
+        // Malformed JSON is repaired instead of generating the recipe again
+        return recipeResponseParser.parse(response);
     }
 
     // AiService API without annotations
-    private Recipe fetchRecipeFor(String ingredientsAsString) throws IOException {
-        // Prompt templates from the classpath
-        var systemPrompt = fixJsonResponsePromptResource.getContentAsString(StandardCharsets.UTF_8);
-        var userPromptTemplate = recipeForIngredientsPromptResource.getContentAsString(StandardCharsets.UTF_8);
+    private String fetchRecipeFor(String ingredientsAsString) {
+        // Helper class for prompt templating, compiled once by the registry
+        var userMessage = promptRegistry.template("recipe-for-ingredients")
+                .apply(Map.of("ingredients", ingredientsAsString))
+                .toUserMessage();
 
-        // Builder for high-abstraction API
-        var recipeAiService = AiServices.builder(RecipeAiServices.Standard.class)
-                .chatModel(chatModel)
-                .systemMessageProvider(chatMemoryId -> systemPrompt)
-                .build();
+        return recipeAiService.find(userMessage);
+    }
 
-        // Helper class for prompt templating
-        var userMessage = PromptTemplate.from(userPromptTemplate)
-                .apply(Map.of("ingredients", ingredientsAsString))
+    // Tools are resolved before the model call in the prefetched tools mode, and inlined into the prompt
+    private String fetchRecipeFor(String ingredientsAsString, String availableIngredientsAsString) {
+        prefetchedToolExecutions.increment();
+        var userMessage = promptRegistry.template("recipe-for-prefetched-available-ingredients")
+                .apply(Map.of("ingredients", ingredientsAsString, "availableIngredients", availableIngredientsAsString))
                 .toUserMessage();
 
-        // The result is of type Recipe.class due to structured output
         return recipeAiService.find(userMessage);
     }
 
+    private String fetchRecipeWithRagFor(String ingredientsAsString, String availableIngredientsAsString) {
+        prefetchedToolExecutions.increment();
+        return recipeAiServiceWithRagAndPrefetchedTools.find(ingredientsAsString, availableIngredientsAsString);
+    }
+
+    // Blocking AiServices execute tools on the calling thread
+    private String withAvailableIngredients(List<String> availableIngredients, Supplier<String> modelCall) {
+        availableIngredientsOfRequest.set(availableIngredients);
+        try {
+            return modelCall.get();
+        } finally {
+            availableIngredientsOfRequest.remove();
+        }
+    }
+
     // Defines a tool
     @Tool("Fetches ingredients that are available at home")
     List<String> fetchIngredientsAvailableAtHome() {
         log.info("Fetching ingredients available at home function called by LLM");
-        return availableIngredientsInFridge;
+        modelToolExecutions.increment();
+        var availableIngredients = availableIngredientsOfRequest.get();
+        return availableIngredients != null ? availableIngredients : fridgeInventory.ingredients(FridgeInventory.DEFAULT_USER);
     }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.example.recipe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+// Cancellation of a streamed recipe, e.g. if the client disconnected or the stream timed out.
+// LangChain4j can't abort a started token stream, so the remaining partial responses of the model are dropped, and e.g. the
+// observation of the stream is stopped by the callbacks registered for the cancellation.
+class RecipeStreamCancellation {
+
+    // The streaming chat model is called on the thread that starts the token stream, which is how it finds the cancellation
+    private static final ThreadLocal<RecipeStreamCancellation> current = new ThreadLocal<>();
+
+    private final List<Runnable> callbacks = new ArrayList<>();
+    private boolean cancelled;
+
+    static Optional<RecipeStreamCancellation> current() {
+        return Optional.ofNullable(current.get());
+    }
+
+    // Runs the action, e.g. starting a token stream, with this cancellation as the current one of the thread
+    void runBound(Runnable action) {
+        var previous = current.get();
+        current.set(this);
+        try {
+            action.run();
+        } finally {
+            if (previous != null) {
+                current.set(previous);
+            } else {
+                current.remove();
+            }
+        }
+    }
+
+    // Called immediately if the stream is already cancelled
+    void onCancel(Runnable callback) {
+        synchronized (callbacks) {
+            if (!cancelled) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    void cancel() {
+        List<Runnable> cancelCallbacks;
+        synchronized (callbacks) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            cancelCallbacks = List.copyOf(callbacks);
+            callbacks.clear();
+        }
+        cancelCallbacks.forEach(Runnable::run);
+    }
+
+    boolean isCancelled() {
+        synchronized (callbacks) {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.recipe;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+
+// Incremental parser for a streamed Recipe JSON object.
+// Emits the top-level string fields and each element of the ingredients and instructions lists as soon as they are complete.
+class RecipeStreamParser {
+
+    private static final Set<String> LIST_FIELDS = Set.of("ingredients", "instructions");
+
+    private final FieldListener listener;
+    private final StringBuilder json = new StringBuilder();
+    private final StringBuilder currentString = new StringBuilder();
+    private final StringBuilder unicodeDigits = new StringBuilder();
+    private final Deque<Character> containers = new ArrayDeque<>();
+
+    private boolean started;
+    private boolean completed;
+    private boolean inString;
+    // Double quotes of JSON, or single quotes, which the lenient reader of the RecipeResponseParser accepts as well
+    private char quote;
+    private boolean escaped;
+    private int unicodeDigitsRemaining;
+    private boolean expectingKey;
+    private String topLevelKey;
+
+    RecipeStreamParser(FieldListener listener) {
+        this.listener = listener;
+    }
+
+    void append(String token) {
+        for (int i = 0; i < token.length() && !completed; i++) {
+            process(token.charAt(i));
+        }
+    }
+
+    // JSON of the root object received so far without any text (e.g. markdown code fences) around it, with an unterminated string, a dangling comma or key, and unclosed lists
+    // and objects completed, e.g. for a response that was cut off
+    String repairedJson() {
+        var repaired = new StringBuilder(json);
+        var inObject = !containers.isEmpty() && containers.peek() == '{';
+        if (inString) {
+            if (unicodeDigitsRemaining > 0) {
+                repaired.setLength(repaired.length() - (4 - unicodeDigitsRemaining) - 2);
+            } else if (escaped) {
+                repaired.setLength(repaired.length() - 1);
+            }
+            repaired.append(quote);
+            if (inObject && expectingKey) {
+                repaired.append(":null");
+            }
+        } else {
+            while (!repaired.isEmpty() && Character.isWhitespace(repaired.charAt(repaired.length() - 1))) {
+                repaired.setLength(repaired.length() - 1);
+            }
+            var last = repaired.isEmpty() ? ' ' : repaired.charAt(repaired.length() - 1);
+            if (last == ',') {
+                repaired.setLength(repaired.length() - 1);
+            } else if (last == ':') {
+                repaired.append("null");
+            } else if ((last == '"' || last == '\'') && inObject && expectingKey) {
+                repaired.append(":null");
+            }
+        }
+        for (var container : containers) {
+            repaired.append(container == '{' ? '}' : ']');
+        }
+        return repaired.toString();
+    }
+
+    private void process(char c) {
+        if (!started) {
+            if (c != '{') {
+                return;
+            }
+            started = true;
+        }
+        json.append(c);
+
+        if (inString) {
+            processStringCharacter(c);
+            return;
+        }
+
+        switch (c) {
+            case '"', '\'' -> {
+                inString = true;
+                quote = c;
+                currentString.setLength(0);
+            }
+            case '{' -> {
+                containers.push('{');
+                expectingKey = true;
+            }
+            case '[' -> containers.push('[');
+            case '}', ']' -> {
+                containers.poll();
+                completed = containers.isEmpty();
+            }
+            case ':' -> expectingKey = false;
+            case ',' -> expectingKey = !containers.isEmpty() && containers.peek() == '{';
+            default -> {
+            }
+        }
+    }
+
+    private void processStringCharacter(char c) {
+        if (unicodeDigitsRemaining > 0) {
+            unicodeDigits.append(c);
+            if (--unicodeDigitsRemaining == 0) {
+                currentString.append((char) Integer.parseInt(unicodeDigits.toString(), 16));
+                unicodeDigits.setLength(0);
+            }
+        } else if (escaped) {
+            escaped = false;
+            switch (c) {
+                case 'n' -> currentString.append('\n');
+                case 't' -> currentString.append('\t');
+                case 'r' -> currentString.append('\r');
+                case 'b' -> currentString.append('\b');
+                case 'f' -> currentString.append('\f');
+                case 'u' -> unicodeDigitsRemaining = 4;
+                default -> currentString.append(c);
+            }
+        } else if (c == '\\') {
+            escaped = true;
+        } else if (c == quote) {
+            inString = false;
+            onStringCompleted(currentString.toString());
+        } else {
+            currentString.append(c);
+        }
+    }
+
+    private void onStringCompleted(String value) {
+        var inObject = !containers.isEmpty() && containers.peek() == '{';
+        if (inObject && expectingKey) {
+            if (containers.size() == 1) {
+                topLevelKey = value;
+            }
+        } else if (inObject && containers.size() == 1) {
+            listener.onField(topLevelKey, value);
+        } else if (!inObject && containers.size() == 2 && LIST_FIELDS.contains(topLevelKey)) {
+            listener.onField(topLevelKey, value);
+        }
+    }
+
+    @FunctionalInterface
+    interface FieldListener {
+        void onField(String field, String value);
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.recipe;
+
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.TokenStream;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Streaming counterpart of RecipeService that reports the recipe fields as soon as the model generated them
+@Service
+class RecipeStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(RecipeStreamService.class);
+
+    private final RecipeAiServices.StreamingStandard recipeAiService;
+    private final RecipeAiServices.StreamingWithRag recipeAiServiceWithRag;
+    private final RecipeAiServices.StreamingWithRagAndPrefetchedTools recipeAiServiceWithRagAndPrefetchedTools;
+    private final RecipeCache recipeCache;
+    private final InFlightRecipeRequests inFlightRecipeRequests;
+    private final RecipeImageService recipeImageService;
+    private final RecipeResponseParser recipeResponseParser;
+    private final IngredientIndex ingredientIndex;
+    private final PromptRegistry promptRegistry;
+    private final FridgeInventory fridgeInventory;
+    private final ObservationRegistry observationRegistry;
+
+    RecipeStreamService(StreamingChatModel streamingChatModel, @Lazy RecipeAiServices.StreamingWithRag recipeAiServiceWithRag,
+                        @Lazy RecipeAiServices.StreamingWithRagAndPrefetchedTools recipeAiServiceWithRagAndPrefetchedTools,
+                        RecipeCache recipeCache, InFlightRecipeRequests inFlightRecipeRequests, RecipeImageService recipeImageService,
+                        RecipeResponseParser recipeResponseParser, @Lazy IngredientIndex ingredientIndex, PromptRegistry promptRegistry, FridgeInventory fridgeInventory,
+                        ObservationRegistry observationRegistry) {
+        this.recipeAiService = AiServices.builder(RecipeAiServices.StreamingStandard.class)
+                .streamingChatModel(streamingChatModel)
+                .systemMessageProvider(chatMemoryId -> promptRegistry.text("json-recipe-response"))
+                .build();
+        this.recipeAiServiceWithRag = recipeAiServiceWithRag;
+        this.recipeAiServiceWithRagAndPrefetchedTools = recipeAiServiceWithRagAndPrefetchedTools;
+        this.recipeCache = recipeCache;
+        this.inFlightRecipeRequests = inFlightRecipeRequests;
+        this.recipeImageService = recipeImageService;
+        this.recipeResponseParser = recipeResponseParser;
+        this.ingredientIndex = ingredientIndex;
+        this.promptRegistry = promptRegistry;
+        this.fridgeInventory = fridgeInventory;
+        this.observationRegistry = observationRegistry;
+    }
+
+    void streamRecipeFor(String userId, List<String> ingredients, boolean preferAvailableIngredients, boolean preferOwnRecipes,
+                         RecipeStreamListener listener, RecipeStreamCancellation cancellation) throws IOException {
+        var availableIngredients = preferAvailableIngredients ? fridgeInventory.ingredients(userId) : List.<String>of();
+        var cacheKey = RecipeCacheKey.of(ingredients, preferAvailableIngredients, preferOwnRecipes, availableIngredients);
+        // The observation ends with the recipe or the error, which are reported on a thread of the streaming response
+        var observation = Observation.createNotStarted("recipe.requests", observationRegistry)
+                .lowCardinalityKeyValue("mode", cacheKey.mode())
+                .lowCardinalityKeyValue("streaming", "true")
+                .lowCardinalityKeyValue("cache", "miss")
+                .start();
+        var observedListener = new ObservedRecipeStreamListener(listener, observation, cancellation);
+        cancellation.onCancel(observedListener::cancel);
+        try (var scope = observation.openScope()) {
+            streamRecipeFor(cacheKey, ingredients, availableIngredients, observedListener, observation, cancellation);
+        } catch (IOException | RuntimeException e) {
+            observedListener.stop(e);
+            throw e;
+        }
+    }
+
+    private void streamRecipeFor(RecipeCacheKey cacheKey, List<String> ingredients, List<String> availableIngredients,
+                                 RecipeStreamListener listener, Observation observation, RecipeStreamCancellation cancellation) throws IOException {
+        var preferOwnRecipes = cacheKey.preferOwnRecipes();
+        var cachedRecipe = recipeCache.get(cacheKey);
+        if (cachedRecipe.isPresent()) {
+            log.info("Streamed recipe for ingredients '{}' served from cache", cacheKey.asString());
+            observation.lowCardinalityKeyValue("cache", "hit");
+            listener.onRecipe(recipeImageService.withImage(cachedRecipe.get()));
+            return;
+        }
+        if (preferOwnRecipes) {
+            var ownRecipe = ingredientIndex.findRecipeCovering(ingredients);
+            if (ownRecipe.isPresent()) {
+                log.info("Streamed recipe for ingredients '{}' served from uploaded recipe '{}'", ingredients, ownRecipe.get().name());
+                recipeCache.put(cacheKey, ownRecipe.get());
+                listener.onRecipe(recipeImageService.withImage(ownRecipe.get()));
+                return;
+            }
+        }
+
+        // Concurrent identical requests, streamed or not, share one generation. Requests joining a pending one only get the recipe.
+        var recipeRequest = new CompletableFuture<Recipe>();
+        var pendingRequest = inFlightRecipeRequests.registerIfAbsent(cacheKey, recipeRequest);
+        if (pendingRequest.isPresent()) {
+            log.info("Streamed recipe for ingredients '{}' joins a pending request", cacheKey.asString());
+            pendingRequest.get().whenComplete((recipe, error) -> {
+                if (error != null) {
+                    listener.onError(error instanceof CompletionException ? error.getCause() : error);
+                } else {
+                    listener.onRecipe(recipeImageService.withImage(recipe));
+                }
+            });
+            return;
+        }
+        try {
+            startRecipeStream(cacheKey, ingredients, availableIngredients, listener, recipeRequest, cancellation);
+        } catch (RuntimeException e) {
+            recipeRequest.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void startRecipeStream(RecipeCacheKey cacheKey, List<String> ingredients, List<String> availableIngredients,
+                                   RecipeStreamListener listener, CompletableFuture<Recipe> recipeRequest,
+                                   RecipeStreamCancellation cancellation) {
+        var preferAvailableIngredients = cacheKey.preferAvailableIngredients();
+        var preferOwnRecipes = cacheKey.preferOwnRecipes();
+        TokenStream tokenStream;
+        var ingredientsAsString = String.join(",", ingredients);
+        var availableIngredientsAsString = String.join(",", availableIngredients);
+        // Tools are always prefetched, as they would be executed on a thread of the streaming response, which doesn't know the user
+        if (!preferAvailableIngredients && !preferOwnRecipes) {
+            tokenStream = streamRecipeFor("recipe-for-ingredients", Map.of("ingredients", ingredientsAsString));
+        } else if (preferAvailableIngredients && !preferOwnRecipes) {
+            tokenStream = streamRecipeFor("recipe-for-prefetched-available-ingredients",
+                    Map.of("ingredients", ingredientsAsString, "availableIngredients", availableIngredientsAsString));
+        } else if (!preferAvailableIngredients && preferOwnRecipes) {
+            tokenStream = recipeAiServiceWithRag.find(ingredientsAsString);
+        } else {
+            tokenStream = recipeAiServiceWithRagAndPrefetchedTools.find(ingredientsAsString, availableIngredientsAsString);
+        }
+
+        var parser = new RecipeStreamParser(listener::onField);
+        var recipeTokenStream = tokenStream.onPartialResponse(parser::append)
+                .onCompleteResponse(response -> {
+                    try {
+                        // The complete response is parsed again, so that malformed JSON is repaired like for blocking requests
+                        var recipe = recipeResponseParser.parse(response.aiMessage().text());
+                        recipeCache.put(cacheKey, recipe);
+                        recipeRequest.complete(recipe);
+                        listener.onRecipe(recipeImageService.withImage(recipe));
+                    } catch (IOException e) {
+                        log.warn("Parsing streamed recipe for ingredients '{}' failed: {}", ingredientsAsString, e.getMessage());
+                        recipeRequest.completeExceptionally(e);
+                        listener.onError(e);
+                    }
+                })
+                .onError(error -> {
+                    recipeRequest.completeExceptionally(error);
+                    listener.onError(error);
+                });
+        // The streaming chat model finds the cancellation of the stream on the thread that starts it
+        cancellation.runBound(recipeTokenStream::start);
+    }
+
+    // Streaming AiService API without annotations
+    private TokenStream streamRecipeFor(String promptName, Map<String, Object> variables) {
+        var userMessage = promptRegistry.template(promptName)
+                .apply(variables)
+                .toUserMessage();
+
+        return recipeAiService.find(userMessage);
+    }
+
+    // Stops the observation exactly once, with the recipe, the error or the cancellation of the stream.
+    // Events after the cancellation aren't passed on, as nobody receives them.
+    private static final class ObservedRecipeStreamListener implements RecipeStreamListener {
+
+        private final RecipeStreamListener listener;
+        private final Observation observation;
+        private final RecipeStreamCancellation cancellation;
+        private final AtomicBoolean stopped = new AtomicBoolean();
+
+        ObservedRecipeStreamListener(RecipeStreamListener listener, Observation observation, RecipeStreamCancellation cancellation) {
+            this.listener = listener;
+            this.observation = observation;
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        public void onField(String field, String value) {
+            if (!cancellation.isCancelled()) {
+                listener.onField(field, value);
+            }
+        }
+
+        @Override
+        public void onRecipe(Recipe recipe) {
+            if (stop(null)) {
+                listener.onRecipe(recipe);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            if (stop(error)) {
+                listener.onError(error);
+            }
+        }
+
+        void cancel() {
+            stop(null);
+        }
+
+        boolean stop(Throwable error) {
+            if (!stopped.compareAndSet(false, true)) {
+                return false;
+            }
+            if (error != null) {
+                observation.error(error);
+            }
+            observation.stop();
+            return true;
+        }
+    }
+
+    interface RecipeStreamListener {
+
+        // Called for each top-level field and each element of the ingredients and instructions lists
+        void onField(String field, String value);
+
+        void onRecipe(Recipe recipe);
+
+        void onError(Throwable error);
+    }
+}
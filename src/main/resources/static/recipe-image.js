@@ -0,0 +1,12 @@
+// Replaces the placeholder of a recipe image as soon as its asynchronous generation is finished
+function awaitRecipeImage(img, imageHandleUrl) {
+    const eventSource = new EventSource(imageHandleUrl + '/events');
+    eventSource.addEventListener('image', event => {
+        img.src = event.data;
+        eventSource.close();
+    });
+    eventSource.addEventListener('error', () => eventSource.close());
+}
+
+document.querySelectorAll('img[data-pending-image]')
+    .forEach(img => awaitRecipeImage(img, img.dataset.pendingImage));
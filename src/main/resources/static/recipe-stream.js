@@ -0,0 +1,71 @@
+// Renders the recipe fields sent by the /api/v1/recipes/stream endpoint as they arrive
+(function () {
+    const streamButton = document.getElementById('stream-button');
+    const streamContent = document.getElementById('stream-content');
+    let eventSource;
+
+    function element(id) {
+        return document.getElementById(id);
+    }
+
+    function appendListItem(listId, text) {
+        const item = document.createElement('li');
+        item.textContent = text;
+        element(listId).appendChild(item);
+    }
+
+    function renderList(listId, items) {
+        element(listId).replaceChildren();
+        (items || []).forEach(item => appendListItem(listId, item));
+    }
+
+    function resetStreamContent() {
+        ['stream-name', 'stream-description', 'stream-ingredients', 'stream-instructions']
+            .forEach(id => element(id).replaceChildren());
+        element('stream-img').src = 'placeholder.png';
+        document.querySelectorAll('.content:not(#stream-content)').forEach(content => content.hidden = true);
+        streamContent.hidden = false;
+    }
+
+    streamButton.addEventListener('click', () => {
+        const params = new URLSearchParams({
+            ingredients: element('ingredients').value,
+            preferAvailableIngredients: element('prefer-available').checked,
+            preferOwnRecipes: element('prefer-own-recipes').checked
+        });
+
+        if (eventSource) {
+            eventSource.close();
+        }
+        resetStreamContent();
+        streamButton.disabled = true;
+
+        eventSource = new EventSource('api/v1/recipes/stream?' + params);
+        eventSource.addEventListener('name', event => element('stream-name').textContent = event.data);
+        eventSource.addEventListener('description', event => element('stream-description').textContent = event.data);
+        eventSource.addEventListener('ingredients', event => appendListItem('stream-ingredients', event.data));
+        eventSource.addEventListener('instructions', event => appendListItem('stream-instructions', event.data));
+        eventSource.addEventListener('recipe', event => {
+            const recipe = JSON.parse(event.data);
+            element('stream-name').textContent = recipe.name;
+            element('stream-description').textContent = recipe.description;
+            renderList('stream-ingredients', recipe.ingredients);
+            renderList('stream-instructions', recipe.instructions);
+            if (recipe.imageUrl && recipe.imageUrl.startsWith('/api/v1/recipes/images/')
+                && !recipe.imageUrl.startsWith('/api/v1/recipes/images/files/')) {
+                awaitRecipeImage(element('stream-img'), recipe.imageUrl);
+            } else if (recipe.imageUrl && !recipe.imageUrl.includes('example')) {
+                element('stream-img').src = recipe.imageUrl;
+            }
+            eventSource.close();
+            streamButton.disabled = false;
+        });
+        eventSource.addEventListener('error', event => {
+            if (event.data) {
+                element('stream-description').textContent = event.data;
+            }
+            eventSource.close();
+            streamButton.disabled = false;
+        });
+    });
+})();
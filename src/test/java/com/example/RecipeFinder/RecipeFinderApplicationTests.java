@@ -2,8 +2,11 @@ package com.example.RecipeFinder;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
 
+// With the in-process models of the bench profile, so that no AI provider or Redis is required
 @SpringBootTest
+@ActiveProfiles("bench")
 class RecipeFinderApplicationTests {
 
 	@Test
@@ -0,0 +1,163 @@
+package com.example.embedding;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+// Approximate search with the HNSW index of the QuantizedEmbeddingStore compared to the exact search of a store without index
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+    private static final int SIZE = 2000;
+    private static final int CLUSTER_COUNT = 20;
+    private static final int QUERY_COUNT = 100;
+    private static final int MAX_RESULTS = 10;
+    private static final HnswParameters PARAMETERS = new HnswParameters(16, 100, 64);
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(42);
+    private final List<QuantizedEmbeddingStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void closeStores() throws IOException {
+        for (var store : stores) {
+            store.close();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void recallComparedToExactSearch(boolean quantized) throws IOException {
+        var hnswStore = newStore("hnsw.bin", quantized, PARAMETERS);
+        var exactStore = newStore("exact.bin", quantized, null);
+        addAll(List.of(hnswStore, exactStore), clusteredEmbeddings(SIZE));
+        assertThat(hnswStore.isIndexed()).isTrue();
+
+        assertThat(recall(hnswStore, exactStore, clusteredEmbeddings(QUERY_COUNT))).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void deletedVectorsAreSkippedWithoutReturningFewerResults() throws IOException {
+        var hnswStore = newStore("hnsw.bin", true, PARAMETERS);
+        var exactStore = newStore("exact.bin", true, null);
+        var embeddings = clusteredEmbeddings(SIZE);
+        var ids = addAll(List.of(hnswStore, exactStore), embeddings);
+        // The nearest neighbours of the query are deleted, short of compacting the store
+        var query = embeddings.getFirst();
+        var deletedIds = search(exactStore, query, SIZE * 2 / 5).stream().map(EmbeddingMatch::embeddingId).toList();
+        hnswStore.removeAll(deletedIds);
+        exactStore.removeAll(deletedIds);
+        assertThat(hnswStore.isDeleted(ids.indexOf(deletedIds.getFirst()))).isTrue();
+
+        var matches = search(hnswStore, query, MAX_RESULTS);
+
+        assertThat(matches).hasSize(MAX_RESULTS);
+        assertThat(matches).extracting(EmbeddingMatch::embeddingId).doesNotContainAnyElementsOf(deletedIds);
+        assertThat(recall(hnswStore, exactStore, List.of(query))).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void snapshotRoundTrip(boolean quantized) throws IOException {
+        var embeddings = clusteredEmbeddings(SIZE);
+        var queries = clusteredEmbeddings(QUERY_COUNT);
+        var store = newStore("hnsw.bin", quantized, PARAMETERS);
+        addAll(List.of(store), embeddings);
+        var resultsBeforeSnapshot = queries.stream().map(query -> search(store, query, MAX_RESULTS)).toList();
+        store.close();
+        stores.remove(store);
+
+        var loadedStore = newStore("hnsw.bin", quantized, PARAMETERS);
+        await().atMost(Duration.ofSeconds(30)).until(loadedStore::isIndexed);
+
+        for (int i = 0; i < queries.size(); i++) {
+            var matches = search(loadedStore, queries.get(i), MAX_RESULTS);
+            var expectedMatches = resultsBeforeSnapshot.get(i);
+            assertThat(matches).hasSameSizeAs(expectedMatches);
+            for (int j = 0; j < matches.size(); j++) {
+                assertThat(matches.get(j).embeddingId()).isEqualTo(expectedMatches.get(j).embeddingId());
+                assertThat(matches.get(j).score()).isEqualTo(expectedMatches.get(j).score());
+                assertThat(matches.get(j).embedding()).isEqualTo(expectedMatches.get(j).embedding());
+                assertThat(matches.get(j).embedded()).isEqualTo(expectedMatches.get(j).embedded());
+            }
+        }
+    }
+
+    private QuantizedEmbeddingStore newStore(String fileName, boolean quantized, HnswParameters parameters) throws IOException {
+        var store = new QuantizedEmbeddingStore(directory.resolve(fileName), quantized, Duration.ofDays(1), parameters);
+        stores.add(store);
+        return store;
+    }
+
+    private static List<String> addAll(List<QuantizedEmbeddingStore> stores, List<Embedding> embeddings) {
+        var ids = new ArrayList<String>();
+        var segments = new ArrayList<TextSegment>();
+        for (int i = 0; i < embeddings.size(); i++) {
+            ids.add("id-" + i);
+            segments.add(TextSegment.from("Segment " + i, Metadata.from(Map.of("index", String.valueOf(i)))));
+        }
+        stores.forEach(store -> store.addAll(ids, embeddings, segments));
+        return ids;
+    }
+
+    // Share of the exact top results found by the approximate search
+    private static double recall(QuantizedEmbeddingStore hnswStore, QuantizedEmbeddingStore exactStore, List<Embedding> queries) {
+        var found = 0;
+        for (var query : queries) {
+            var approximateIds = new HashSet<String>();
+            search(hnswStore, query, MAX_RESULTS).forEach(match -> approximateIds.add(match.embeddingId()));
+            for (var match : search(exactStore, query, MAX_RESULTS)) {
+                if (approximateIds.contains(match.embeddingId())) {
+                    found++;
+                }
+            }
+        }
+        return (double) found / (queries.size() * MAX_RESULTS);
+    }
+
+    private static List<EmbeddingMatch<TextSegment>> search(QuantizedEmbeddingStore store, Embedding query, int maxResults) {
+        return store.search(EmbeddingSearchRequest.builder().queryEmbedding(query).maxResults(maxResults).build()).matches();
+    }
+
+    // Clustered vectors resemble embeddings of text segments more than uniformly distributed ones
+    private List<Embedding> clusteredEmbeddings(int count) {
+        var clusterRandom = new Random(7);
+        var centroids = new float[CLUSTER_COUNT][DIMENSION];
+        for (var centroid : centroids) {
+            for (int i = 0; i < DIMENSION; i++) {
+                centroid[i] = (float) clusterRandom.nextGaussian();
+            }
+        }
+        var embeddings = new ArrayList<Embedding>(count);
+        for (int n = 0; n < count; n++) {
+            var centroid = centroids[random.nextInt(CLUSTER_COUNT)];
+            var vector = new float[DIMENSION];
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] = centroid[i] + 0.5f * (float) random.nextGaussian();
+            }
+            embeddings.add(Embedding.from(vector));
+        }
+        return embeddings;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.embedding;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class QuantizedEmbeddingStoreTest {
+
+    private static final int DIMENSION = 16;
+    private static final int COUNT = 10;
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(42);
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void unchangedEntriesAddedAgainAfterRestartAreKeptInPlace(boolean quantized) throws IOException {
+        var ids = ids();
+        var embeddings = randomEmbeddings();
+        var segments = segments();
+        try (var store = newStore(quantized)) {
+            store.addAll(ids, embeddings, segments);
+        }
+
+        try (var store = newStore(quantized)) {
+            store.addAll(ids, embeddings, segments);
+
+            for (int ordinal = 0; ordinal < COUNT; ordinal++) {
+                assertThat(store.isDeleted(ordinal)).isFalse();
+            }
+            assertThat(search(store, embeddings.getFirst())).first()
+                    .satisfies(match -> assertThat(match.embeddingId()).isEqualTo(ids.getFirst()))
+                    .satisfies(match -> assertThat(match.embedded()).isEqualTo(segments.getFirst()));
+        }
+    }
+
+    @Test
+    void changedEntriesAreReplaced() throws IOException {
+        var ids = ids();
+        try (var store = newStore(true)) {
+            store.addAll(ids, randomEmbeddings(), segments());
+            var replacement = randomEmbeddings().getFirst();
+
+            store.addAll(List.of(ids.getFirst()), List.of(replacement), List.of(TextSegment.from("Replaced")));
+
+            assertThat(store.isDeleted(0)).isTrue();
+            assertThat(search(store, replacement)).first()
+                    .satisfies(match -> assertThat(match.embeddingId()).isEqualTo(ids.getFirst()))
+                    .satisfies(match -> assertThat(match.embedded().text()).isEqualTo("Replaced"));
+        }
+    }
+
+    @Test
+    void storeIsCompactedOnceMostVectorsAreDeleted() throws IOException {
+        var ids = ids();
+        try (var store = newStore(true)) {
+            store.addAll(ids, randomEmbeddings(), segments());
+            // Half of the vectors are deleted after replacing all entries, which doesn't require compaction yet
+            var replacements = randomEmbeddings();
+            store.addAll(ids, replacements, segments());
+            assertThat(store.isDeleted(0)).isTrue();
+
+            var lastReplacement = randomEmbeddings().getFirst();
+            store.addAll(List.of(ids.getFirst()), List.of(lastReplacement), List.of(segments().getFirst()));
+
+            // The store is compacted in the background
+            await().atMost(Duration.ofSeconds(5)).until(() -> store.deletedCount() == 0);
+            for (int ordinal = 0; ordinal < COUNT; ordinal++) {
+                assertThat(store.isDeleted(ordinal)).isFalse();
+            }
+            assertThat(search(store, lastReplacement).getFirst().embeddingId()).isEqualTo(ids.getFirst());
+            assertThat(search(store, replacements.get(1)).getFirst().embeddingId()).isEqualTo(ids.get(1));
+            assertThat(search(store, replacements.get(1))).extracting(EmbeddingMatch::embeddingId).doesNotHaveDuplicates();
+        }
+    }
+
+    @Test
+    void batchWithMismatchingDimensionIsRejectedEntirely() throws IOException {
+        var ids = ids();
+        try (var store = newStore(true)) {
+            store.addAll(ids.subList(0, 1), randomEmbeddings().subList(0, 1), segments().subList(0, 1));
+            var embeddings = new ArrayList<>(randomEmbeddings());
+            embeddings.set(COUNT - 1, Embedding.from(new float[DIMENSION + 1]));
+
+            assertThatThrownBy(() -> store.addAll(ids, embeddings, segments())).isInstanceOf(IllegalArgumentException.class);
+
+            assertThat(search(store, embeddings.get(1))).extracting(EmbeddingMatch::embeddingId).containsExactly(ids.getFirst());
+        }
+    }
+
+    private QuantizedEmbeddingStore newStore(boolean quantized) throws IOException {
+        return new QuantizedEmbeddingStore(directory.resolve("store.bin"), quantized, Duration.ofDays(1));
+    }
+
+    private static List<EmbeddingMatch<TextSegment>> search(QuantizedEmbeddingStore store, Embedding query) {
+        return store.search(EmbeddingSearchRequest.builder().queryEmbedding(query).maxResults(COUNT).build()).matches();
+    }
+
+    private static List<String> ids() {
+        var ids = new ArrayList<String>();
+        for (int i = 0; i < COUNT; i++) {
+            ids.add("id-" + i);
+        }
+        return ids;
+    }
+
+    private static List<TextSegment> segments() {
+        var segments = new ArrayList<TextSegment>();
+        for (int i = 0; i < COUNT; i++) {
+            segments.add(TextSegment.from("Segment " + i, Metadata.from(Map.of("file_name", "recipes.pdf"))));
+        }
+        return segments;
+    }
+
+    private List<Embedding> randomEmbeddings() {
+        var embeddings = new ArrayList<Embedding>();
+        for (int i = 0; i < COUNT; i++) {
+            var vector = new float[DIMENSION];
+            for (int j = 0; j < DIMENSION; j++) {
+                vector[j] = (float) random.nextGaussian();
+            }
+            embeddings.add(Embedding.from(vector));
+        }
+        return embeddings;
+    }
+}
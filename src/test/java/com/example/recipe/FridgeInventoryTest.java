@@ -0,0 +1,84 @@
+package com.example.recipe;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.JedisPooled;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FridgeInventoryTest {
+
+    private static final List<String> DEFAULT_INGREDIENTS = List.of("bacon", "onions");
+
+    private final JedisPooled redisClient = mock(JedisPooled.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void usersWithoutInventoryHaveTheDefaultIngredients() {
+        var inventory = inventory(Optional.empty(), Duration.ofMinutes(1), 10);
+
+        assertThat(inventory.ingredients("alice")).isEqualTo(DEFAULT_INGREDIENTS);
+    }
+
+    @Test
+    void ingredientsAreStrippedWithoutEmptyOnesAndDuplicates() {
+        var inventory = inventory(Optional.empty(), Duration.ofMinutes(1), 10);
+
+        inventory.setIngredients("alice", List.of(" eggs", "milk ", "", "  ", "eggs"));
+
+        assertThat(inventory.ingredients("alice")).containsExactly("eggs", "milk");
+        assertThat(inventory.ingredients(FridgeInventory.DEFAULT_USER)).isEqualTo(DEFAULT_INGREDIENTS);
+    }
+
+    @Test
+    void leastRecentlyActiveLocalInventoriesAreEvicted() {
+        var inventory = inventory(Optional.empty(), Duration.ofMinutes(1), 2);
+        inventory.setIngredients("alice", List.of("eggs"));
+        inventory.setIngredients("bob", List.of("milk"));
+        inventory.ingredients("alice");
+
+        inventory.setIngredients("carol", List.of("rice"));
+
+        assertThat(inventory.ingredients("alice")).containsExactly("eggs");
+        assertThat(inventory.ingredients("bob")).isEqualTo(DEFAULT_INGREDIENTS);
+        assertThat(inventory.ingredients("carol")).containsExactly("rice");
+    }
+
+    @Test
+    void inventoriesFromRedisAreCachedUntilTheTtlExpires() {
+        when(redisClient.get(anyString())).thenReturn("[\"eggs\",\"milk\"]");
+        var cachingInventory = inventory(Optional.of(redisClient), Duration.ofMinutes(1), 10);
+
+        assertThat(cachingInventory.ingredients("alice")).containsExactly("eggs", "milk");
+        assertThat(cachingInventory.ingredients("alice")).containsExactly("eggs", "milk");
+        verify(redisClient, times(1)).get("fridge:alice");
+        assertThat(meterRegistry.counter("fridge.inventory.requests", "result", "hit").count()).isEqualTo(1);
+
+        var expiringInventory = inventory(Optional.of(redisClient), Duration.ZERO, 10);
+        expiringInventory.ingredients("alice");
+        expiringInventory.ingredients("alice");
+        verify(redisClient, times(3)).get("fridge:alice");
+    }
+
+    @Test
+    void defaultIngredientsAreUsedIfRedisFails() {
+        when(redisClient.get(anyString())).thenThrow(new IllegalStateException("Connection refused"));
+        var inventory = inventory(Optional.of(redisClient), Duration.ofMinutes(1), 10);
+
+        assertThat(inventory.ingredients("alice")).isEqualTo(DEFAULT_INGREDIENTS);
+    }
+
+    private FridgeInventory inventory(Optional<JedisPooled> redisClient, Duration cacheTtl, int cacheMaxSize) {
+        return new FridgeInventory(redisClient, new ObjectMapper(), meterRegistry, DEFAULT_INGREDIENTS, cacheTtl, cacheMaxSize);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.recipe;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+class HybridContentRetrieverTest {
+
+    private static final double MIN_SCORE = 0.7;
+    private static final Embedding QUERY_EMBEDDING = Embedding.from(new float[]{1, 0});
+
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+    private final EmbeddingStore<TextSegment> embeddingStore = mock(EmbeddingStore.class);
+    private final IngredientIndex ingredientIndex = mock(IngredientIndex.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        when(embeddingModel.embed(anyString())).thenReturn(Response.from(QUERY_EMBEDDING));
+    }
+
+    @Test
+    void rankingsAreMergedByReciprocalRankFusion() {
+        vectorMatches("a", "b", "c");
+        lexicalMatches(lexicalMatch("c", false), lexicalMatch("b", false));
+
+        // c: 1/63 + 1/61, b: 1/62 + 1/62, a: 1/61
+        assertThat(texts(retriever(3).retrieve(Query.from("tomatoes and basil")))).containsExactly("c", "b", "a");
+    }
+
+    @Test
+    void lexicalMatchesBelowMinScoreAreOnlyRetrievedIfTheyCoverAllIngredients() {
+        vectorMatches("a");
+        lexicalMatches(lexicalMatch("partial", false), lexicalMatch("a", false), lexicalMatch("complete", true));
+
+        var contents = retriever(3).retrieve(Query.from("tomatoes and basil"));
+
+        // a: 1/61 + 1/62, complete: 1/63
+        assertThat(texts(contents)).containsExactly("a", "complete");
+        assertThat(meterRegistry.summary("rag.retrieval.matches", "source", "retrieved").totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    void resultsAreLimitedToMaxResultsFromMoreCandidates() {
+        vectorMatches("a", "b", "c");
+        lexicalMatches(lexicalMatch("b", false));
+
+        var contents = retriever(2).retrieve(Query.from("tomatoes and basil"));
+
+        assertThat(texts(contents)).containsExactly("b", "a");
+        var searchRequest = ArgumentCaptor.forClass(EmbeddingSearchRequest.class);
+        verify(embeddingStore).search(searchRequest.capture());
+        assertThat(searchRequest.getValue().maxResults()).isEqualTo(8);
+        assertThat(searchRequest.getValue().minScore()).isEqualTo(MIN_SCORE);
+        assertThat(searchRequest.getValue().queryEmbedding()).isEqualTo(QUERY_EMBEDDING);
+        verify(ingredientIndex).search("tomatoes and basil", 8);
+    }
+
+    private HybridContentRetriever retriever(int maxResults) {
+        var bulkhead = new ModelBulkhead("embedding", "all", 1, 1, Duration.ofSeconds(1), meterRegistry, ObservationRegistry.NOOP);
+        return new HybridContentRetriever(embeddingModel, bulkhead, embeddingStore, ingredientIndex, maxResults, MIN_SCORE,
+                ObservationRegistry.NOOP, meterRegistry);
+    }
+
+    // The store only returns matches above the min score, ordered by descending score
+    private void vectorMatches(String... ids) {
+        var matches = new ArrayList<EmbeddingMatch<TextSegment>>();
+        for (int i = 0; i < ids.length; i++) {
+            matches.add(new EmbeddingMatch<>(0.9 - i * 0.05, ids[i], QUERY_EMBEDDING, TextSegment.from(ids[i])));
+        }
+        when(embeddingStore.search(any())).thenReturn(new EmbeddingSearchResult<>(matches));
+    }
+
+    private void lexicalMatches(IngredientIndex.LexicalMatch... matches) {
+        when(ingredientIndex.search(anyString(), anyInt())).thenReturn(List.of(matches));
+    }
+
+    private static IngredientIndex.LexicalMatch lexicalMatch(String id, boolean coversAllIngredients) {
+        return new IngredientIndex.LexicalMatch(id, TextSegment.from(id), coversAllIngredients ? 1.0 : 0.5, coversAllIngredients);
+    }
+
+    private static List<String> texts(List<Content> contents) {
+        return contents.stream().map(content -> content.textSegment().text()).toList();
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.recipe;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class InFlightRecipeRequestsTest {
+
+    private static final RecipeCacheKey KEY = RecipeCacheKey.of(List.of("bacon", "onions"), false, false, List.of());
+    private static final Recipe RECIPE = new Recipe("Bacon with onions", "", List.of("bacon", "onions"), List.of(), "");
+    private static final int CALLERS = 8;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final InFlightRecipeRequests inFlightRecipeRequests = new InFlightRecipeRequests(meterRegistry);
+
+    @Test
+    void concurrentIdenticalRequestsShareOneGeneration() throws Exception {
+        var model = new LatchedModel(() -> RECIPE);
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var results = submitCallers(executor, model);
+            model.release();
+
+            for (var result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(RECIPE);
+            }
+        }
+        assertThat(model.calls()).isEqualTo(1);
+        assertThat(meterRegistry.counter("recipe.requests.coalesced").count()).isEqualTo(CALLERS - 1);
+    }
+
+    @Test
+    void failureIsSharedButNotMemoized() throws Exception {
+        var model = new LatchedModel(() -> {
+            throw new IOException("Model unavailable");
+        });
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var results = submitCallers(executor, model);
+            model.release();
+
+            for (var result : results) {
+                assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                        .isInstanceOf(ExecutionException.class)
+                        .cause().isInstanceOf(IOException.class).hasMessage("Model unavailable");
+            }
+        }
+        assertThat(model.calls()).isEqualTo(1);
+
+        // A retry after the failure triggers a new generation
+        assertThat(inFlightRecipeRequests.computeIfAbsent(KEY, () -> RECIPE)).isEqualTo(RECIPE);
+    }
+
+    @Test
+    void blockingRequestJoinsRegisteredStream() throws Exception {
+        var stream = new CompletableFuture<Recipe>();
+        assertThat(inFlightRecipeRequests.registerIfAbsent(KEY, stream)).isEmpty();
+        var otherStream = new CompletableFuture<Recipe>();
+        assertThat(inFlightRecipeRequests.registerIfAbsent(KEY, otherStream)).containsSame(stream);
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var result = executor.submit(() -> inFlightRecipeRequests.computeIfAbsent(KEY, () -> {
+                throw new IOException("Second generation");
+            }));
+            await().atMost(Duration.ofSeconds(5))
+                    .until(() -> meterRegistry.counter("recipe.requests.coalesced").count() == 2);
+            stream.complete(RECIPE);
+
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(RECIPE);
+        }
+        // The completed stream is no longer pending
+        assertThat(inFlightRecipeRequests.registerIfAbsent(KEY, otherStream)).isEmpty();
+    }
+
+    // The first caller leads the generation, which is blocked until all other callers wait for it
+    private List<Future<Recipe>> submitCallers(ExecutorService executor, LatchedModel model) {
+        var results = new ArrayList<Future<Recipe>>();
+        results.add(executor.submit(() -> inFlightRecipeRequests.computeIfAbsent(KEY, model::generate)));
+        model.awaitStarted();
+        for (int i = 1; i < CALLERS; i++) {
+            results.add(executor.submit(() -> inFlightRecipeRequests.computeIfAbsent(KEY, model::generate)));
+        }
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> meterRegistry.counter("recipe.requests.coalesced").count() == CALLERS - 1);
+        return results;
+    }
+
+    // Fake model whose generation blocks until released
+    private static final class LatchedModel {
+
+        private final InFlightRecipeRequests.RecipeLoader response;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final AtomicInteger calls = new AtomicInteger();
+
+        LatchedModel(InFlightRecipeRequests.RecipeLoader response) {
+            this.response = response;
+        }
+
+        Recipe generate() throws IOException {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            return response.load();
+        }
+
+        void awaitStarted() {
+            try {
+                assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        int calls() {
+            return calls.get();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.recipe;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.segment.TextSegment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngredientIndexTest {
+
+    @TempDir
+    private Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void termsAreLowerCasedSingularWordsWithoutUnitsAndFillerWords() {
+        assertThat(IngredientIndex.terms("2 cups of finely chopped Tomatoes, 3 potatoes and a pinch of Salt"))
+                .containsExactly("tomato", "potato", "salt");
+        assertThat(IngredientIndex.terms("berries, eggs, glass noodles, gas")).containsExactly("berry", "egg", "glass", "noodle", "gas");
+    }
+
+    @Test
+    void findsRecipeCoveringAllIngredientsWithFewestOtherIngredients() throws IOException {
+        var index = index();
+        index.addRecipes(List.of(
+                recipe("Tomato Salad", "4 tomatoes", "1 onion", "salt"),
+                recipe("Tomato Soup", "4 tomatoes", "1 onion", "2 cups of stock", "salt"),
+                recipe("Pancakes", "200 g flour", "2 eggs")));
+
+        assertThat(index.findRecipeCovering(List.of("Tomato", "onions"))).map(Recipe::name).contains("Tomato Salad");
+        assertThat(index.findRecipeCovering(List.of("tomatoes", "stock"))).map(Recipe::name).contains("Tomato Soup");
+        assertThat(index.findRecipeCovering(List.of("tomatoes", "eggs"))).isEmpty();
+        assertThat(meterRegistry.counter("recipe.own-recipes.requests", "result", "hit").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("recipe.own-recipes.requests", "result", "miss").count()).isEqualTo(1);
+    }
+
+    @Test
+    void ingredientsAreOnlyCoveredBySingleIngredientsOfTheRecipe() throws IOException {
+        var index = index();
+        index.addRecipes(List.of(recipe("Turkey Stew", "2 turkey breasts", "500 ml chicken stock", "salt", "2 tbsp olive oil")));
+
+        assertThat(index.findRecipeCovering(List.of("chicken breast"))).isEmpty();
+        assertThat(index.findRecipeCovering(List.of("chicken breast", "salt", "oil"))).isEmpty();
+        assertThat(index.findRecipeCovering(List.of("turkey breast", "salt", "oil"))).map(Recipe::name).contains("Turkey Stew");
+    }
+
+    @Test
+    void searchOnlyMatchesIngredientsOfRecipesAndFlagsFullCoverage() throws IOException {
+        var index = index();
+        index.addRecipes(List.of(recipe("Pesto Pasta", "basil", "pine nuts", "tomatoes")));
+        index.addSegments(List.of("soup", "pesto", "bread"), List.of(
+                TextSegment.from("Tomato soup with tomatoes and basil"),
+                TextSegment.from("Basil pesto with pine nuts"),
+                TextSegment.from("Bread with butter")));
+
+        var matches = index.search("Please suggest a recipe with tomatoes and basil", 10);
+
+        assertThat(matches).extracting(IngredientIndex.LexicalMatch::segmentId).containsExactly("soup", "pesto");
+        assertThat(matches).extracting(IngredientIndex.LexicalMatch::coversAllIngredients).containsExactly(true, false);
+        assertThat(matches.getFirst().coverage()).isEqualTo(1.0);
+        assertThat(index.search("bread and butter", 10)).isEmpty();
+    }
+
+    @Test
+    void entriesAreReplayedFromTheFile() throws IOException {
+        var index = index();
+        index.addRecipes(List.of(recipe("Pancakes", "200 g flour", "2 eggs")));
+        index.addSegments(List.of("pancakes"), List.of(TextSegment.from("Pancakes with flour and eggs")));
+
+        var reloaded = index();
+
+        assertThat(reloaded.findRecipeCovering(List.of("eggs"))).map(Recipe::name).contains("Pancakes");
+        assertThat(reloaded.search("eggs", 10)).extracting(IngredientIndex.LexicalMatch::segmentId).containsExactly("pancakes");
+    }
+
+    private IngredientIndex index() throws IOException {
+        return new IngredientIndex(new ObjectMapper(), directory.resolve("ingredient-index.jsonl"), meterRegistry);
+    }
+
+    private static Recipe recipe(String name, String... ingredients) {
+        return new Recipe(name, "", List.of(ingredients), List.of("Cook."), "");
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.recipe;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class ModelBulkheadTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void callIsRejectedWithTooManyRequestsIfTheQueueIsFull() {
+        var bulkhead = bulkhead(0, Duration.ofSeconds(1));
+        bulkhead.acquire();
+
+        try {
+            assertThatThrownBy(() -> bulkhead.call(() -> "recipe"))
+                    .isInstanceOfSatisfying(ModelBulkhead.ModelBusyException.class, e -> {
+                        assertThat(e.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+                        assertThat(e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("5");
+                    });
+            assertThat(rejections("queue-full")).isEqualTo(1);
+            assertThat(gauge("model.bulkhead.queued")).isZero();
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    @Test
+    void callIsRejectedWithServiceUnavailableAfterTheTimeout() {
+        var bulkhead = bulkhead(1, Duration.ofMillis(50));
+        bulkhead.acquire();
+
+        try {
+            assertThatThrownBy(() -> bulkhead.call(() -> "recipe"))
+                    .isInstanceOfSatisfying(ModelBulkhead.ModelBusyException.class,
+                            e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+            assertThat(rejections("timeout")).isEqualTo(1);
+            assertThat(gauge("model.bulkhead.queued")).isZero();
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    @Test
+    void queuedCallRunsWhenAPermitIsReleased() {
+        var bulkhead = bulkhead(1, Duration.ofSeconds(5));
+        var release = new CountDownLatch(1);
+        var first = CompletableFuture.supplyAsync(() -> bulkhead.call(() -> {
+            await(release);
+            return "first";
+        }));
+        await().atMost(Duration.ofSeconds(5)).until(() -> gauge("model.bulkhead.active") == 1);
+
+        var second = CompletableFuture.supplyAsync(() -> bulkhead.call(() -> "second"));
+        await().atMost(Duration.ofSeconds(5)).until(() -> gauge("model.bulkhead.queued") == 1);
+        release.countDown();
+
+        assertThat(first.join()).isEqualTo("first");
+        assertThat(second.join()).isEqualTo("second");
+        assertThat(gauge("model.bulkhead.queued")).isZero();
+        assertThat(gauge("model.bulkhead.active")).isZero();
+    }
+
+    private ModelBulkhead bulkhead(int maxQueuedCalls, Duration timeout) {
+        return new ModelBulkhead("chat", "ollama", 1, maxQueuedCalls, timeout, meterRegistry, ObservationRegistry.NOOP);
+    }
+
+    private double rejections(String reason) {
+        return meterRegistry.counter("model.bulkhead.rejections", "model", "chat", "provider", "ollama", "reason", reason).count();
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tags("model", "chat", "provider", "ollama").gauge().value();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
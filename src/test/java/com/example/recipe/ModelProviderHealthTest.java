@@ -0,0 +1,144 @@
+package com.example.recipe;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ModelProviderHealthTest {
+
+    private static final Duration FAST = Duration.ofMillis(100);
+    private static final Duration SLOW_CALL_THRESHOLD = Duration.ofSeconds(1);
+
+    @Test
+    void circuitOpensWhenFailureRateReachesThresholdAfterMinCalls() {
+        var health = new ModelProviderHealth(10, 0.5, SLOW_CALL_THRESHOLD, Duration.ofHours(1));
+
+        for (int i = 0; i < 4; i++) {
+            health.record(false, FAST);
+        }
+        assertThat(health.state()).isEqualTo(ModelProviderHealth.State.CLOSED);
+
+        health.record(true, FAST);
+
+        assertThat(health.state()).isEqualTo(ModelProviderHealth.State.OPEN);
+        assertThat(health.tryAcquireCall()).isFalse();
+    }
+
+    @Test
+    void circuitStaysClosedBelowThreshold() {
+        var health = new ModelProviderHealth(10, 0.5, SLOW_CALL_THRESHOLD, Duration.ofHours(1));
+
+        for (int i = 0; i < 10; i++) {
+            health.record(i % 3 != 0, FAST);
+        }
+
+        assertThat(health.state()).isEqualTo(ModelProviderHealth.State.CLOSED);
+        assertThat(health.tryAcquireCall()).isTrue();
+    }
+
+    @Test
+    void slowCallsCountAsFailures() {
+        var health = new ModelProviderHealth(10, 0.5, SLOW_CALL_THRESHOLD, Duration.ofHours(1));
+
+        for (int i = 0; i < 5; i++) {
+            health.record(true, SLOW_CALL_THRESHOLD.plusMillis(1));
+        }
+
+        assertThat(health.state()).isEqualTo(ModelProviderHealth.State.OPEN);
+    }
+
+    @Test
+    void successfulProbeClosesTheCircuit() {
+        var health = openHealth();
+
+        assertThat(health.tryAcquireCall()).isTrue();
+        assertThat(health.state()).isEqualTo(ModelProviderHealth.State.HALF_OPEN);
+        // Only one probe call at a time
+        assertThat(health.tryAcquireCall()).isFalse();
+
+        health.record(true, FAST);
+        assertThat(health.state()).isEqualTo(ModelProviderHealth.State.CLOSED);
+
+        // The window starts empty again, so the circuit doesn't open on the next failure
+        health.record(false, FAST);
+        assertThat(health.state()).isEqualTo(ModelProviderHealth.State.CLOSED);
+    }
+
+    @Test
+    void failedProbeOpensTheCircuitAgain() {
+        var health = openHealth();
+
+        assertThat(health.tryAcquireCall()).isTrue();
+        health.record(false, FAST);
+
+        assertThat(health.state()).isEqualTo(ModelProviderHealth.State.OPEN);
+    }
+
+    @Test
+    void cancelledProbeAllowsAnotherProbe() {
+        var health = openHealth();
+
+        assertThat(health.tryAcquireCall()).isTrue();
+        health.recordCancelled();
+
+        assertThat(health.state()).isEqualTo(ModelProviderHealth.State.OPEN);
+        assertThat(health.tryAcquireCall()).isTrue();
+    }
+
+    @Test
+    void onlyOneOfConcurrentCallersProbes() throws Exception {
+        var health = openHealth();
+        var callers = 16;
+        var start = new CountDownLatch(1);
+        var probes = new ArrayList<Future<Boolean>>();
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < callers; i++) {
+                probes.add(executor.submit(() -> {
+                    start.await();
+                    return health.tryAcquireCall();
+                }));
+            }
+            start.countDown();
+
+            var acquired = 0;
+            for (var probe : probes) {
+                acquired += probe.get(5, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            assertThat(acquired).isEqualTo(1);
+        }
+        assertThat(health.state()).isEqualTo(ModelProviderHealth.State.HALF_OPEN);
+    }
+
+    @Test
+    void latencyPercentileNeedsEnoughSamples() {
+        var health = new ModelProviderHealth(10, 0.5, SLOW_CALL_THRESHOLD, Duration.ofHours(1));
+        var defaultLatency = Duration.ofSeconds(10);
+
+        for (int i = 1; i < 10; i++) {
+            health.record(true, Duration.ofMillis(i));
+        }
+        assertThat(health.latencyPercentile(0.9, defaultLatency)).isEqualTo(defaultLatency);
+
+        health.record(true, Duration.ofMillis(10));
+        assertThat(health.latencyPercentile(0.9, defaultLatency)).isEqualTo(Duration.ofMillis(9));
+        assertThat(health.latencyPercentile(1, defaultLatency)).isEqualTo(Duration.ofMillis(10));
+    }
+
+    // Open circuit, whose open duration has already passed
+    private static ModelProviderHealth openHealth() {
+        var health = new ModelProviderHealth(10, 0.5, SLOW_CALL_THRESHOLD, Duration.ZERO);
+        for (int i = 0; i < 5; i++) {
+            health.record(false, FAST);
+        }
+        assertThat(health.state()).isEqualTo(ModelProviderHealth.State.OPEN);
+        return health;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.recipe;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ModelRouterTest {
+
+    private static final Duration HEDGE_DELAY = Duration.ofMillis(50);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void preferredProviderAnswers() {
+        var secondCalls = new AtomicInteger();
+        var router = router(false, route("first", () -> "first"), route("second", () -> {
+            secondCalls.incrementAndGet();
+            return "second";
+        }));
+
+        assertThat(router.call(Supplier::get, Objects::nonNull)).isEqualTo("first");
+        assertThat(secondCalls).hasValue(0);
+    }
+
+    @Test
+    void failedCallFallsBackToNextProvider() {
+        var first = route("first", () -> {
+            throw new IllegalStateException("Connection refused");
+        });
+        var router = router(false, first, route("second", () -> "second"));
+
+        assertThat(router.call(Supplier::get, Objects::nonNull)).isEqualTo("second");
+        assertThat(meterRegistry.counter("model.routing.fallback-calls", "model", "chat").count()).isEqualTo(1);
+        assertThat(meterRegistry.timer("model.routing.calls", "model", "chat", "provider", "first", "outcome", "failure").count()).isEqualTo(1);
+    }
+
+    @Test
+    void lastFailureIsThrownIfAllProvidersFail() {
+        var router = router(false,
+                route("first", () -> {
+                    throw new IllegalStateException("Connection refused");
+                }),
+                route("second", () -> {
+                    throw new IllegalStateException("Service unavailable");
+                }));
+
+        assertThatThrownBy(() -> router.call(Supplier::get, Objects::nonNull)).hasMessage("Service unavailable");
+    }
+
+    @Test
+    void invalidResultFallsBackWithoutAffectingTheHealthOfTheProvider() {
+        var first = route("first", () -> null);
+        var router = router(false, first, route("second", () -> "second"));
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(router.call(Supplier::get, Objects::nonNull)).isEqualTo("second");
+        }
+
+        assertThat(first.health().state()).isEqualTo(ModelProviderHealth.State.CLOSED);
+        assertThat(meterRegistry.counter("model.routing.invalid-results", "model", "chat", "provider", "first").count()).isEqualTo(10);
+        assertThat(meterRegistry.timer("model.routing.calls", "model", "chat", "provider", "first", "outcome", "success").count()).isEqualTo(10);
+    }
+
+    @Test
+    void invalidResultIsReturnedIfNoProviderHasAValidOne() {
+        var router = router(false, route("first", () -> ""), route("second", () -> ""));
+
+        assertThat(router.call(Supplier::get, result -> !result.isEmpty())).isEmpty();
+    }
+
+    @Test
+    void providerWithOpenCircuitIsSkipped() {
+        var firstCalls = new AtomicInteger();
+        var first = route("first", () -> {
+            firstCalls.incrementAndGet();
+            throw new IllegalStateException("Connection refused");
+        });
+        var router = router(false, first, route("second", () -> "second"));
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(router.call(Supplier::get, Objects::nonNull)).isEqualTo("second");
+        }
+
+        assertThat(first.health().state()).isEqualTo(ModelProviderHealth.State.OPEN);
+        assertThat(router.candidates()).extracting(ModelRouter.Route::provider).containsExactly("second");
+        assertThat(firstCalls).hasValue(5);
+    }
+
+    @Test
+    void unusedProbeIsReleased() {
+        var first = route("first", () -> "first", Duration.ZERO);
+        var second = route("second", () -> "second", Duration.ZERO);
+        var router = router(false, first, second);
+        openCircuit(second);
+
+        assertThat(router.call(Supplier::get, Objects::nonNull)).isEqualTo("first");
+
+        // The second provider wasn't called, so its probe call is still available
+        assertThat(second.health().state()).isEqualTo(ModelProviderHealth.State.OPEN);
+        assertThat(router.candidates()).extracting(ModelRouter.Route::provider).containsExactly("first", "second");
+    }
+
+    @Test
+    void slowProviderIsHedged() throws InterruptedException {
+        var release = new CountDownLatch(1);
+        var router = router(true, route("first", () -> {
+            await(release);
+            return "first";
+        }), route("second", () -> "second"));
+
+        try {
+            assertThat(router.call(Supplier::get, Objects::nonNull)).isEqualTo("second");
+            assertThat(meterRegistry.counter("model.routing.hedged-calls", "model", "chat").count()).isEqualTo(1);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void slowProviderIsAwaitedWithoutHedging() {
+        var router = router(false, route("first", () -> {
+            sleep(HEDGE_DELAY.multipliedBy(2));
+            return "first";
+        }), route("second", () -> "second"));
+
+        assertThat(router.call(Supplier::get, Objects::nonNull)).isEqualTo("first");
+        assertThat(meterRegistry.counter("model.routing.hedged-calls", "model", "chat").count()).isZero();
+    }
+
+    @SafeVarargs
+    private ModelRouter<Supplier<String>> router(boolean hedging, ModelRouter.Route<Supplier<String>>... routes) {
+        return new ModelRouter<>("chat", List.of(routes), hedging, 0.95, HEDGE_DELAY, Duration.ZERO, meterRegistry);
+    }
+
+    private static ModelRouter.Route<Supplier<String>> route(String provider, Supplier<String> model) {
+        return route(provider, model, Duration.ofHours(1));
+    }
+
+    private static ModelRouter.Route<Supplier<String>> route(String provider, Supplier<String> model, Duration openDuration) {
+        return new ModelRouter.Route<>(provider, model, new ModelProviderHealth(10, 0.5, Duration.ofMinutes(1), openDuration));
+    }
+
+    private static void openCircuit(ModelRouter.Route<Supplier<String>> route) {
+        for (int i = 0; i < 5; i++) {
+            route.health().record(false, Duration.ZERO);
+        }
+        assertThat(route.health().state()).isEqualTo(ModelProviderHealth.State.OPEN);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
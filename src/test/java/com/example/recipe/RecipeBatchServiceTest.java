@@ -0,0 +1,101 @@
+package com.example.recipe;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecipeBatchServiceTest {
+
+    private static final Recipe BACON = new Recipe("Bacon", "", List.of("bacon"), List.of("Fry."), "");
+    private static final Recipe ONIONS = new Recipe("Onions", "", List.of("onions"), List.of("Fry."), "");
+
+    private final RecipeService recipeService = mock(RecipeService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void resultsAreReportedInOrderOfCompletion() throws IOException {
+        var onionsRequested = new CountDownLatch(1);
+        when(recipeService.fetchRecipeFor(anyString(), eq(List.of("bacon")), anyBoolean(), anyBoolean(), anyBoolean()))
+                .thenAnswer(invocation -> {
+                    onionsRequested.await();
+                    return BACON;
+                });
+        when(recipeService.fetchRecipeFor(anyString(), eq(List.of("onions")), anyBoolean(), anyBoolean(), anyBoolean()))
+                .thenAnswer(invocation -> {
+                    onionsRequested.countDown();
+                    return ONIONS;
+                });
+        var results = new ArrayList<RecipeBatchService.BatchRecipeResult>();
+
+        batchService(2).fetchRecipesFor(FridgeInventory.DEFAULT_USER, batch("bacon", "onions", " "), results::add);
+
+        assertThat(results).containsExactlyInAnyOrder(
+                new RecipeBatchService.BatchRecipeResult(0, BACON, null),
+                new RecipeBatchService.BatchRecipeResult(1, ONIONS, null),
+                new RecipeBatchService.BatchRecipeResult(2, null, "No ingredients"));
+        assertThat(results.indexOf(new RecipeBatchService.BatchRecipeResult(1, ONIONS, null)))
+                .isLessThan(results.indexOf(new RecipeBatchService.BatchRecipeResult(0, BACON, null)));
+    }
+
+    // Items in progress may compute a recipe that other requests wait for, so they complete even if the client disconnected
+    @Test
+    void cancelledBatchDoesNotInterruptItemsInProgress() throws IOException {
+        var baconRequested = new CountDownLatch(1);
+        var releaseBacon = new CountDownLatch(1);
+        var baconInterrupted = new AtomicBoolean();
+        var baconCompleted = new AtomicBoolean();
+        when(recipeService.fetchRecipeFor(anyString(), eq(List.of("bacon")), anyBoolean(), anyBoolean(), anyBoolean()))
+                .thenAnswer(invocation -> {
+                    baconRequested.countDown();
+                    try {
+                        releaseBacon.await();
+                    } catch (InterruptedException e) {
+                        baconInterrupted.set(true);
+                        throw e;
+                    }
+                    baconCompleted.set(true);
+                    return BACON;
+                });
+        when(recipeService.fetchRecipeFor(anyString(), eq(List.of("onions")), anyBoolean(), anyBoolean(), anyBoolean()))
+                .thenAnswer(invocation -> {
+                    baconRequested.await();
+                    return ONIONS;
+                });
+
+        assertThatThrownBy(() -> batchService(2).fetchRecipesFor(FridgeInventory.DEFAULT_USER, batch("bacon", "onions"), result -> {
+            throw new IOException("Broken pipe");
+        })).isInstanceOf(IOException.class);
+
+        assertThat(baconCompleted).isFalse();
+        releaseBacon.countDown();
+        await().atMost(Duration.ofSeconds(5)).untilTrue(baconCompleted);
+        assertThat(baconInterrupted).isFalse();
+    }
+
+    private RecipeBatchService batchService(int maxConcurrency) {
+        return new RecipeBatchService(recipeService, meterRegistry, maxConcurrency, 100);
+    }
+
+    private static RecipeBatchService.BatchRecipeRequest batch(String... ingredients) {
+        var items = new ArrayList<RecipeBatchService.BatchRecipeRequest.Item>();
+        for (var ingredient : ingredients) {
+            items.add(new RecipeBatchService.BatchRecipeRequest.Item(List.of(ingredient), false, false));
+        }
+        return new RecipeBatchService.BatchRecipeRequest(items, false);
+    }
+}
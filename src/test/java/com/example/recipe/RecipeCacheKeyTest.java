@@ -0,0 +1,50 @@
+package com.example.recipe;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecipeCacheKeyTest {
+
+    @Test
+    void ingredientsAreTrimmedLowerCasedDeduplicatedAndSorted() {
+        var key = RecipeCacheKey.of(List.of(" Onions", "bacon", "ONIONS ", "", "  "), false, false, List.of());
+
+        assertThat(key.ingredients()).containsExactly("bacon", "onions");
+        assertThat(key).isEqualTo(RecipeCacheKey.of(List.of("onions", "Bacon"), false, false, List.of()));
+    }
+
+    @Test
+    void modeFlagsArePartOfTheKey() {
+        var ingredients = List.of("bacon", "onions");
+        var standard = RecipeCacheKey.of(ingredients, false, false, List.of());
+        var rag = RecipeCacheKey.of(ingredients, false, true, List.of());
+        var tools = RecipeCacheKey.of(ingredients, true, false, List.of());
+        var toolsAndRag = RecipeCacheKey.of(ingredients, true, true, List.of());
+
+        assertThat(List.of(standard, rag, tools, toolsAndRag)).doesNotHaveDuplicates();
+        assertThat(List.of(standard.asString(), rag.asString(), tools.asString(), toolsAndRag.asString())).doesNotHaveDuplicates();
+        assertThat(List.of(standard.mode(), rag.mode(), tools.mode(), toolsAndRag.mode()))
+                .containsExactly("standard", "rag", "tools", "tools-and-rag");
+    }
+
+    @Test
+    void fridgeContentsArePartOfTheKeyOnlyIfAvailableIngredientsArePreferred() {
+        var ingredients = List.of("bacon");
+
+        assertThat(RecipeCacheKey.of(ingredients, false, false, List.of("eggs")))
+                .isEqualTo(RecipeCacheKey.of(ingredients, false, false, List.of("milk")));
+        assertThat(RecipeCacheKey.of(ingredients, true, false, List.of("eggs")))
+                .isNotEqualTo(RecipeCacheKey.of(ingredients, true, false, List.of("milk")));
+    }
+
+    @Test
+    void fridgeContentsAreCanonicalButKeepTheirOrderOfPriority() {
+        var key = RecipeCacheKey.of(List.of("bacon"), true, false, List.of(" Milk", "eggs", "MILK", ""));
+
+        assertThat(key.availableIngredients()).containsExactly("milk", "eggs");
+        assertThat(key).isNotEqualTo(RecipeCacheKey.of(List.of("bacon"), true, false, List.of("eggs", "milk")));
+    }
+}
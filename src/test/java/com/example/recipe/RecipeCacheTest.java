@@ -0,0 +1,113 @@
+package com.example.recipe;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecipeCacheTest {
+
+    private static final Duration TTL = Duration.ofHours(1);
+    private static final Duration REDIS_RETRY_INTERVAL = Duration.ofSeconds(30);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TestClock clock = new TestClock();
+
+    @Test
+    void entriesExpireAfterTtl() {
+        var cache = cache(Optional.empty(), 10);
+        var key = key("bacon");
+        cache.put(key, recipe("Bacon"));
+
+        clock.advance(TTL.minusSeconds(1));
+        assertThat(cache.get(key)).contains(recipe("Bacon"));
+
+        clock.advance(Duration.ofSeconds(1));
+        assertThat(cache.get(key)).isEmpty();
+        assertThat(meterRegistry.counter("recipe.cache.evictions", "cause", "expired").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("recipe.cache.requests", "result", "miss").count()).isEqualTo(1);
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedOnceMaxSizeIsExceeded() {
+        var cache = cache(Optional.empty(), 2);
+        cache.put(key("bacon"), recipe("Bacon"));
+        cache.put(key("eggs"), recipe("Eggs"));
+        cache.get(key("bacon"));
+
+        cache.put(key("onions"), recipe("Onions"));
+
+        assertThat(cache.get(key("bacon"))).isPresent();
+        assertThat(cache.get(key("onions"))).isPresent();
+        assertThat(cache.get(key("eggs"))).isEmpty();
+        assertThat(meterRegistry.counter("recipe.cache.evictions", "cause", "size").count()).isEqualTo(1);
+    }
+
+    @Test
+    void unreachableRedisIsSkippedForRetryInterval() {
+        var redisClient = mock(JedisPooled.class);
+        when(redisClient.get(anyString())).thenThrow(new JedisConnectionException("Connection refused"));
+        var cache = cache(Optional.of(redisClient), 10);
+
+        assertThat(cache.get(key("bacon"))).isEmpty();
+        cache.put(key("eggs"), recipe("Eggs"));
+        assertThat(cache.get(key("onions"))).isEmpty();
+        verify(redisClient, times(1)).get(anyString());
+
+        clock.advance(REDIS_RETRY_INTERVAL);
+        assertThat(cache.get(key("onions"))).isEmpty();
+        verify(redisClient, times(2)).get(anyString());
+    }
+
+    private RecipeCache cache(Optional<JedisPooled> redisClient, int maxSize) {
+        return new RecipeCache(redisClient, new ObjectMapper(), meterRegistry, maxSize, TTL, REDIS_RETRY_INTERVAL, clock);
+    }
+
+    private static RecipeCacheKey key(String ingredient) {
+        return RecipeCacheKey.of(List.of(ingredient), false, false, List.of());
+    }
+
+    private static Recipe recipe(String name) {
+        return new Recipe(name, "", List.of(), List.of(), "");
+    }
+
+    private static final class TestClock extends Clock {
+
+        private Instant instant = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.recipe;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecipeDocumentParserTest {
+
+    @Test
+    void recipeEndsBeforeTheNameAndMetadataOfTheNextRecipe() {
+        var recipes = RecipeDocumentParser.parse("""
+                Tomato Soup
+                Serves 4
+                Ingredients:
+                - 4 tomatoes
+                - 1 onion
+                Instructions
+                1. Chop the vegetables.
+                2) Simmer for 20 minutes.
+
+                Pancakes
+                Makes 8
+                Ingredients
+                * 200 g flour
+                • 2 eggs
+                Method:
+                Mix everything.
+                Fry in a pan.
+                """);
+
+        assertThat(recipes).containsExactly(
+                new Recipe("Tomato Soup", "Serves 4", List.of("4 tomatoes", "1 onion"),
+                        List.of("Chop the vegetables.", "Simmer for 20 minutes."), ""),
+                new Recipe("Pancakes", "Makes 8", List.of("200 g flour", "2 eggs"),
+                        List.of("Mix everything.", "Fry in a pan."), ""));
+    }
+
+    @Test
+    void sectionsWithoutInstructionsAreSkipped() {
+        var recipes = RecipeDocumentParser.parse("""
+                Shopping notes
+                Ingredients
+                - salt
+
+                Pancakes
+                Ingredients
+                - flour
+                Steps
+                Mix.
+                """);
+
+        assertThat(recipes).containsExactly(new Recipe("Pancakes", "", List.of("flour"), List.of("Mix."), ""));
+    }
+
+    @Test
+    void ingredientsWithoutNameAreSkipped() {
+        var recipes = RecipeDocumentParser.parse("""
+                Ingredients
+                - flour
+                Directions
+                Mix.
+                """);
+
+        assertThat(recipes).isEmpty();
+    }
+
+    @Test
+    void textWithoutHeadingsHasNoRecipes() {
+        assertThat(RecipeDocumentParser.parse("Preface\nThis book collects the recipes of my grandmother.")).isEmpty();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.recipe;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecipeImageStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void storedImagesAreLoadedAfterRestart() throws IOException {
+        var fileName = newStore().store("Bacon with onions", new byte[]{1, 2, 3}, "png");
+
+        var store = newStore();
+
+        assertThat(store.findFileNameByRecipeName(" bacon  with Onions")).contains(fileName);
+        assertThat(store.findImage(fileName)).hasValueSatisfying(image -> assertThat(image.size()).isEqualTo(3));
+    }
+
+    @Test
+    void tempFilesOfIncompleteWritesAreDeletedOnStartup() throws IOException {
+        var fileName = newStore().store("Bacon with onions", new byte[]{1, 2, 3}, "png");
+        var contentTempFile = Files.write(directory.resolve("content").resolve(fileName + "123.tmp"), new byte[]{1});
+        var nameTempFile = Files.writeString(directory.resolve("names").resolve("abc123.tmp"), "incomplete");
+
+        var store = newStore();
+
+        assertThat(contentTempFile).doesNotExist();
+        assertThat(nameTempFile).doesNotExist();
+        assertThat(store.findFileNameByRecipeName("Bacon with onions")).contains(fileName);
+    }
+
+    private RecipeImageStore newStore() throws IOException {
+        return new RecipeImageStore(directory, DataSize.ofMegabytes(1), new SimpleMeterRegistry());
+    }
+}
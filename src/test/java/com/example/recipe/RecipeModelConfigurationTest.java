@@ -0,0 +1,60 @@
+package com.example.recipe;
+
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ResponseFormatType;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecipeModelConfigurationTest {
+
+    private final ChatModel delegate = mock(ChatModel.class);
+
+    @Test
+    void recipeJsonSchemaIsAddedForProvidersWithStructuredOutput() {
+        when(delegate.supportedCapabilities()).thenReturn(Set.of(Capability.RESPONSE_FORMAT_JSON_SCHEMA));
+        var chatRequest = ChatRequest.builder().messages(UserMessage.from("Recipe for bacon")).build();
+
+        new RecipeModelConfiguration.RecipeJsonSchemaChatModel(delegate).chat(chatRequest);
+
+        var sentRequest = ArgumentCaptor.forClass(ChatRequest.class);
+        verify(delegate).chat(sentRequest.capture());
+        assertThat(sentRequest.getValue().messages()).isEqualTo(chatRequest.messages());
+        var responseFormat = sentRequest.getValue().parameters().responseFormat();
+        assertThat(responseFormat.type()).isEqualTo(ResponseFormatType.JSON);
+        assertThat(responseFormat.jsonSchema().name()).isEqualTo("Recipe");
+    }
+
+    @Test
+    void requestIsUnchangedForProvidersWithoutStructuredOutput() {
+        when(delegate.supportedCapabilities()).thenReturn(Set.of());
+        var chatRequest = ChatRequest.builder().messages(UserMessage.from("Recipe for bacon")).build();
+
+        new RecipeModelConfiguration.RecipeJsonSchemaChatModel(delegate).chat(chatRequest);
+
+        verify(delegate).chat(chatRequest);
+    }
+
+    @Test
+    void requestWithToolsIsUnchanged() {
+        when(delegate.supportedCapabilities()).thenReturn(Set.of(Capability.RESPONSE_FORMAT_JSON_SCHEMA));
+        var chatRequest = ChatRequest.builder()
+                .messages(UserMessage.from("Recipe for bacon with the available ingredients"))
+                .toolSpecifications(ToolSpecification.builder().name("availableIngredients").build())
+                .build();
+
+        new RecipeModelConfiguration.RecipeJsonSchemaChatModel(delegate).chat(chatRequest);
+
+        verify(delegate).chat(chatRequest);
+    }
+}
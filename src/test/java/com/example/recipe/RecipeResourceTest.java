@@ -0,0 +1,89 @@
+package com.example.recipe;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class RecipeResourceTest {
+
+    private final RecipeStreamService recipeStreamService = mock(RecipeStreamService.class);
+    private final RecipeIngestionService recipeIngestionService = mock(RecipeIngestionService.class);
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new RecipeResource(recipeStreamService,
+            recipeIngestionService, mock(RecipeBatchService.class), new ObjectMapper())).build();
+
+    @Test
+    void streamSendsFieldEventsFollowedByRecipe() throws Exception {
+        var recipe = new Recipe("Bacon with onions", "Quick and easy", List.of("bacon", "onions"), List.of("Fry both"), "");
+        doAnswer(invocation -> {
+            RecipeStreamService.RecipeStreamListener listener = invocation.getArgument(4);
+            listener.onField("name", recipe.name());
+            listener.onField("description", recipe.description());
+            listener.onField("ingredients", "bacon");
+            listener.onField("ingredients", "onions");
+            listener.onField("instructions", "Fry both");
+            listener.onRecipe(recipe);
+            return null;
+        }).when(recipeStreamService).streamRecipeFor(anyString(), anyList(), anyBoolean(), anyBoolean(), any(), any());
+
+        var result = mockMvc.perform(get("/api/v1/recipes/stream").param("ingredients", "bacon", "onions"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsString()).containsSubsequence(
+                "event:name\ndata:Bacon with onions\n\n",
+                "event:description\ndata:Quick and easy\n\n",
+                "event:ingredients\ndata:bacon\n\n",
+                "event:ingredients\ndata:onions\n\n",
+                "event:instructions\ndata:Fry both\n\n",
+                "event:recipe\ndata:{\"name\":\"Bacon with onions\"");
+        assertThat(result.getResponse().getContentAsString()).endsWith("}\n\n");
+    }
+
+    @Test
+    void errorEndsStream() throws Exception {
+        doAnswer(invocation -> {
+            RecipeStreamService.RecipeStreamListener listener = invocation.getArgument(4);
+            listener.onField("name", "Bacon with onions");
+            listener.onError(new IllegalStateException("Model unavailable"));
+            return null;
+        }).when(recipeStreamService).streamRecipeFor(anyString(), anyList(), anyBoolean(), anyBoolean(), any(), any());
+
+        var result = mockMvc.perform(get("/api/v1/recipes/stream").param("ingredients", "bacon"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsString())
+                .isEqualTo("event:name\ndata:Bacon with onions\n\nevent:error\ndata:Recipe generation failed\n\n");
+    }
+
+    @Test
+    void unreadableUploadIsRejectedWithReason() throws Exception {
+        var job = new IngestionJob(List.of("recipes.pdf"));
+        job.failed(new UncheckedIOException(new RecipeIngestionService.UnreadableDocumentException("recipes.pdf",
+                new IOException("Header doesn't contain versioninfo"))));
+        when(recipeIngestionService.submit(anyList())).thenReturn(job);
+
+        mockMvc.perform(multipart("/api/v1/recipes/upload").file(new MockMultipartFile("file", "recipes.pdf", "application/pdf", new byte[1])))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(status().reason("Document recipes.pdf can't be read: Header doesn't contain versioninfo"));
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.recipe;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.model.chat.ChatModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecipeResponseParserTest {
+
+    private static final String VALID_RESPONSE = """
+            {"name": "Pancakes", "description": "Fluffy pancakes", "ingredients": ["200 g flour", "2 eggs"],
+             "instructions": ["Mix everything.", "Fry in a pan."], "imageUrl": ""}""";
+    private static final Recipe PANCAKES = new Recipe("Pancakes", "Fluffy pancakes", List.of("200 g flour", "2 eggs"),
+            List.of("Mix everything.", "Fry in a pan."), "");
+
+    private final ChatModel chatModel = mock(ChatModel.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void validResponseIsParsedStrictly() throws IOException {
+        assertThat(parser().parse(VALID_RESPONSE)).isEqualTo(PANCAKES);
+
+        assertOutcome("valid");
+        verify(chatModel, never()).chat(anyString());
+    }
+
+    @Test
+    void codeFencesAndTextAroundTheJsonAreRemoved() throws IOException {
+        var response = "Here is your recipe:\n```json\n" + VALID_RESPONSE + "\n```\nEnjoy!";
+
+        assertThat(parser().parse(response)).isEqualTo(PANCAKES);
+        assertOutcome("repaired");
+    }
+
+    @Test
+    void truncatedObjectIsCompleted() throws IOException {
+        var response = """
+                {"name": "Pancakes", "description": "Fluffy pancakes", "ingredients": ["200 g flour", "2 eggs"],
+                 "instructions": ["Mix everything.", "Fry in a pa""";
+
+        assertThat(parser().parse(response)).isEqualTo(new Recipe("Pancakes", "Fluffy pancakes", List.of("200 g flour", "2 eggs"),
+                List.of("Mix everything.", "Fry in a pa"), ""));
+        assertOutcome("repaired");
+    }
+
+    @Test
+    void truncatedObjectWithDanglingKeyIsCompleted() throws IOException {
+        var response = """
+                {"name": "Pancakes", "description": "Fluffy pancakes", "ingredients": ["200 g flour", "2 eggs"],
+                 "instructions": ["Mix everything.", "Fry in a pan."], "imageU""";
+
+        assertThat(parser().parse(response)).isEqualTo(PANCAKES);
+        assertOutcome("repaired");
+    }
+
+    @Test
+    void trailingCommasAreIgnored() throws IOException {
+        var response = """
+                {"name": "Pancakes", "description": "Fluffy pancakes", "ingredients": ["200 g flour", "2 eggs",],
+                 "instructions": ["Mix everything.", "Fry in a pan.",], "imageUrl": "",}""";
+
+        assertThat(parser().parse(response)).isEqualTo(PANCAKES);
+        assertOutcome("repaired");
+    }
+
+    @Test
+    void singleQuotesAreAccepted() throws IOException {
+        var response = """
+                {'name': 'Pancakes', 'description': "Grandma's pancakes", 'ingredients': ['200 g flour', '2 eggs'],
+                 'instructions': ['Mix everything.', 'Fry in a pan [or a skillet'""";
+
+        assertThat(parser().parse(response)).isEqualTo(new Recipe("Pancakes", "Grandma's pancakes", List.of("200 g flour", "2 eggs"),
+                List.of("Mix everything.", "Fry in a pan [or a skillet"), ""));
+        assertOutcome("repaired");
+    }
+
+    @Test
+    void ingredientObjectsAreJoinedToStrings() throws IOException {
+        var response = """
+                {"name": "Pancakes", "description": "Fluffy pancakes",
+                 "ingredients": [{"name": "flour", "quantity": "200", "unit": "g"}, {"name": "eggs", "amount": 2}],
+                 "instructions": ["Mix everything.", "Fry in a pan."], "imageUrl": ""}""";
+
+        assertThat(parser().parse(response)).isEqualTo(PANCAKES);
+        assertOutcome("repaired");
+    }
+
+    @Test
+    void imageUrlOfTheModelIsKeptWhenRepaired() throws IOException {
+        var response = """
+                {"name": "Pancakes", "description": "Fluffy pancakes", "ingredients": ["200 g flour", "2 eggs"],
+                 "instructions": ["Mix everything.", "Fry in a pan."], "imageUrl": "https://example.com/pancakes.png",}""";
+
+        assertThat(parser().parse(response)).isEqualTo(new Recipe(PANCAKES, "https://example.com/pancakes.png"));
+        assertOutcome("repaired");
+    }
+
+    @Test
+    void modelIsAskedToFixNonJsonResponse() throws IOException {
+        when(chatModel.chat(anyString())).thenReturn(VALID_RESPONSE);
+
+        assertThat(parser().parse("Pancakes: mix flour and eggs, then fry them.")).isEqualTo(PANCAKES);
+        assertOutcome("fixed-by-model");
+        verify(chatModel).chat(contains("Pancakes: mix flour and eggs, then fry them."));
+    }
+
+    @Test
+    void responseIsInvalidIfTheModelCantFixIt() {
+        when(chatModel.chat(anyString())).thenReturn("Sorry, I can't help with that.");
+
+        assertThatThrownBy(() -> parser().parse("Pancakes: mix flour and eggs, then fry them."))
+                .isInstanceOf(IOException.class);
+        assertOutcome("invalid");
+    }
+
+    @Test
+    void incompleteRecipeIsFixedByModel() throws IOException {
+        when(chatModel.chat(anyString())).thenReturn(VALID_RESPONSE);
+
+        assertThat(parser().parse("{\"name\": \"Pancakes\", \"ingredients\": [\"200 g flour\", \"2 eggs\"]}")).isEqualTo(PANCAKES);
+        assertOutcome("fixed-by-model");
+    }
+
+    private RecipeResponseParser parser() {
+        try {
+            var promptRegistry = new PromptRegistry(new PathMatchingResourcePatternResolver(), "");
+            return new RecipeResponseParser(new ObjectMapper(), chatModel, promptRegistry, meterRegistry);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Exactly one outcome is counted per parsed response
+    private void assertOutcome(String outcome) {
+        for (var counted : List.of("valid", "repaired", "fixed-by-model", "invalid")) {
+            assertThat(meterRegistry.counter("recipe.responses", "outcome", counted).count())
+                    .as(counted)
+                    .isEqualTo(counted.equals(outcome) ? 1 : 0);
+        }
+    }
+}
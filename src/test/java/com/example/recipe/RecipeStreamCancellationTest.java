@@ -0,0 +1,43 @@
+package com.example.recipe;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecipeStreamCancellationTest {
+
+    @Test
+    void callbacksRunOnceOnCancel() {
+        var cancellation = new RecipeStreamCancellation();
+        var calls = new AtomicInteger();
+        cancellation.onCancel(calls::incrementAndGet);
+
+        cancellation.cancel();
+        cancellation.cancel();
+
+        assertThat(cancellation.isCancelled()).isTrue();
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void callbackOfCancelledStreamRunsImmediately() {
+        var cancellation = new RecipeStreamCancellation();
+        cancellation.cancel();
+        var calls = new AtomicInteger();
+
+        cancellation.onCancel(calls::incrementAndGet);
+
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void cancellationIsCurrentWhileBound() {
+        var cancellation = new RecipeStreamCancellation();
+
+        cancellation.runBound(() -> assertThat(RecipeStreamCancellation.current()).containsSame(cancellation));
+
+        assertThat(RecipeStreamCancellation.current()).isEmpty();
+    }
+}